@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+import org.openjdk.jmh.runner.IterationType;
+
+/**
+ * A JMH profiler that records each measurement iteration with JDK Flight Recorder and reports,
+ * as secondary results, where memory was allocated, how much time threads spent blocked on
+ * monitors, and how long garbage collection paused the application. It uses the {@code jdk.jfr}
+ * API in the benchmark JVM, so no agent or external tool is needed, but it requires Java 11 or
+ * later. It is built in its own module so the main project still compiles for Java 8.
+ *
+ * <p>Usage: {@code java -jar jfr-profiler/target/microbenchmarks-jfr.jar HashMapAccess -prof
+ * com.github.brentworden.microbenchmarks.JfrProfiler}. Append {@code :top=5} to change the number
+ * of allocating classes and sites that are reported from the default of three.
+ *
+ * <p>Allocation is estimated the way Flight Recorder tools do: an allocation that opens a new
+ * thread-local allocation buffer is charged the size of the buffer, and one outside a buffer its
+ * own size. Allocation sites are the top frames of the sampled stack traces. A class or site is
+ * only reported for the iterations in which it is among the top allocators, so its result is the
+ * total over those iterations rather than an average that would hide the iterations it missed.
+ */
+public class JfrProfiler implements InternalProfiler {
+
+  private static final String PREFIX = "\u00b7jfr.";
+
+  private static void add(Map<String, Double> totals, String key, double value) {
+    Double total = totals.get(key);
+    totals.put(key, total == null ? value : total + value);
+  }
+
+  /** Strips the generated suffix from lambda class names so results agree across iterations. */
+  private static String className(RecordedEvent event, String field) {
+    String name = event.getClass(field).getName();
+    int lambda = name.indexOf("$$Lambda");
+    return lambda < 0 ? name : name.substring(0, lambda + "$$Lambda".length());
+  }
+
+  private static String site(RecordedEvent event) {
+    RecordedStackTrace stackTrace = event.getStackTrace();
+    if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+      return "unknown";
+    }
+    RecordedFrame frame = stackTrace.getFrames().get(0);
+    return frame.getMethod().getType().getName()
+        + "."
+        + frame.getMethod().getName()
+        + ":"
+        + frame.getLineNumber();
+  }
+
+  private static List<Map.Entry<String, Double>> top(Map<String, Double> totals, int count) {
+    List<Map.Entry<String, Double>> entries = new ArrayList<>(totals.entrySet());
+    entries.sort(Collections.reverseOrder(Map.Entry.comparingByValue()));
+    return entries.subList(0, Math.min(count, entries.size()));
+  }
+
+  private Recording recording;
+
+  private final int top;
+
+  /**
+   * Creates the profiler.
+   *
+   * @param initLine the options given after the profiler name, e.g. {@code top=5}.
+   */
+  public JfrProfiler(String initLine) {
+    int top = 3;
+    for (String option : initLine.split(",")) {
+      if (option.startsWith("top=")) {
+        top = Integer.parseInt(option.substring("top=".length()));
+      }
+    }
+    this.top = top;
+  }
+
+  @Override
+  public Collection<? extends Result> afterIteration(
+      BenchmarkParams benchmarkParams, IterationParams iterationParams, IterationResult result) {
+    if (recording == null) {
+      return Collections.emptyList();
+    }
+
+    List<RecordedEvent> events;
+    Path file = null;
+    try {
+      recording.stop();
+      file = Files.createTempFile("jmh-jfr", ".jfr");
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file);
+    } catch (IOException ex) {
+      throw new IllegalStateException("Unable to read the flight recording", ex);
+    } finally {
+      recording.close();
+      recording = null;
+      if (file != null) {
+        try {
+          Files.deleteIfExists(file);
+        } catch (IOException ex) {
+          // the temporary file is left behind
+        }
+      }
+    }
+
+    double allocated = 0.0;
+    Map<String, Double> allocatedByClass = new HashMap<>();
+    Map<String, Double> allocatedBySite = new HashMap<>();
+    long gcCount = 0;
+    Duration gcLongestPause = Duration.ZERO;
+    Duration gcPauses = Duration.ZERO;
+    long monitorCount = 0;
+    Duration monitorTime = Duration.ZERO;
+    Map<String, Double> monitorTimeByClass = new HashMap<>();
+    for (RecordedEvent event : events) {
+      switch (event.getEventType().getName()) {
+        case "jdk.ObjectAllocationInNewTLAB":
+        case "jdk.ObjectAllocationOutsideTLAB":
+          double size =
+              event.hasField("tlabSize")
+                  ? event.getLong("tlabSize")
+                  : event.getLong("allocationSize");
+          allocated += size;
+          add(allocatedByClass, className(event, "objectClass"), size);
+          add(allocatedBySite, site(event), size);
+          break;
+        case "jdk.GarbageCollection":
+          ++gcCount;
+          gcPauses = gcPauses.plus(event.getDuration("sumOfPauses"));
+          Duration longestPause = event.getDuration("longestPause");
+          if (longestPause.compareTo(gcLongestPause) > 0) {
+            gcLongestPause = longestPause;
+          }
+          break;
+        case "jdk.JavaMonitorEnter":
+          ++monitorCount;
+          monitorTime = monitorTime.plus(event.getDuration());
+          add(
+              monitorTimeByClass,
+              className(event, "monitorClass"),
+              event.getDuration().toNanos() / 1e6);
+          break;
+        default:
+          break;
+      }
+    }
+
+    List<ScalarResult> results = new ArrayList<>();
+    long ops = result.getMetadata() == null ? 0 : result.getMetadata().getAllOps();
+    results.add(new ScalarResult(PREFIX + "alloc", allocated, "bytes", AggregationPolicy.AVG));
+    if (ops > 0) {
+      results.add(
+          new ScalarResult(PREFIX + "alloc.norm", allocated / ops, "B/op", AggregationPolicy.AVG));
+    }
+    for (Map.Entry<String, Double> entry : top(allocatedByClass, top)) {
+      results.add(
+          new ScalarResult(
+              PREFIX + "alloc.class:" + entry.getKey(),
+              entry.getValue(),
+              "bytes",
+              AggregationPolicy.SUM));
+    }
+    for (Map.Entry<String, Double> entry : top(allocatedBySite, top)) {
+      results.add(
+          new ScalarResult(
+              PREFIX + "alloc.site:" + entry.getKey(),
+              entry.getValue(),
+              "bytes",
+              AggregationPolicy.SUM));
+    }
+    results.add(new ScalarResult(PREFIX + "gc.count", gcCount, "counts", AggregationPolicy.SUM));
+    results.add(
+        new ScalarResult(
+            PREFIX + "gc.pause", gcPauses.toNanos() / 1e6, "ms", AggregationPolicy.SUM));
+    results.add(
+        new ScalarResult(
+            PREFIX + "gc.pause.max", gcLongestPause.toNanos() / 1e6, "ms", AggregationPolicy.MAX));
+    results.add(
+        new ScalarResult(PREFIX + "monitor.count", monitorCount, "counts", AggregationPolicy.SUM));
+    results.add(
+        new ScalarResult(
+            PREFIX + "monitor.time", monitorTime.toNanos() / 1e6, "ms", AggregationPolicy.SUM));
+    for (Map.Entry<String, Double> entry : top(monitorTimeByClass, top)) {
+      results.add(
+          new ScalarResult(
+              PREFIX + "monitor.class:" + entry.getKey(),
+              entry.getValue(),
+              "ms",
+              AggregationPolicy.SUM));
+    }
+    return results;
+  }
+
+  @Override
+  public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+    if (iterationParams.getType() != IterationType.MEASUREMENT) {
+      return;
+    }
+    recording = new Recording();
+    recording.enable("jdk.ObjectAllocationInNewTLAB").withStackTrace();
+    recording.enable("jdk.ObjectAllocationOutsideTLAB").withStackTrace();
+    recording.enable("jdk.GarbageCollection").withoutThreshold();
+    recording.enable("jdk.JavaMonitorEnter").withoutThreshold().withStackTrace();
+    recording.start();
+  }
+
+  @Override
+  public String getDescription() {
+    return "Allocation, monitor contention and GC pauses recorded with JDK Flight Recorder";
+  }
+}
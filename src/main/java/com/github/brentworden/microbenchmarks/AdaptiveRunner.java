@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.BenchmarkList;
+import org.openjdk.jmh.runner.BenchmarkListEntry;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.format.OutputFormatFactory;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+import org.openjdk.jmh.util.ListStatistics;
+
+/**
+ * Runs benchmarks with as few warmup iterations, measurement iterations and forks as are needed to
+ * reach a target confidence, instead of the fixed counts in the benchmark annotations. It accepts
+ * the same arguments as {@code org.openjdk.jmh.Main}; the iteration and fork counts are chosen by
+ * the runner.
+ *
+ * <p>Each benchmark method is run in three steps, with every parameter combination judged
+ * separately and the most demanding one deciding the counts:
+ *
+ * <ol>
+ *   <li>A pilot fork runs {@value #PILOT_ITERATIONS} iterations without warmup. Steady state is
+ *       the first window of {@value #WINDOW} iterations whose mean is within 2% of the mean of the
+ *       last window; the iterations before it become the warmup.
+ *   <li>The variation of the steady iterations gives the number of measurement iterations needed
+ *       for the 95% confidence interval of a fork's mean to be within the target relative error.
+ *   <li>Further forks are added, one at a time, until the 95% confidence interval across the fork
+ *       means is within the target relative error, with at least {@value #MIN_FORKS} and at
+ *       most {@value #MAX_FORKS} forks.
+ * </ol>
+ *
+ * <p>Usage: {@code java -cp target/microbenchmarks.jar
+ * com.github.brentworden.microbenchmarks.AdaptiveRunner [jmh options] [regex]}. The target relative
+ * error defaults to 1% and can be changed with the {@code microbenchmarks.targetError} system
+ * property. Benchmarks measured in {@link Mode#SingleShotTime} are run as annotated.
+ */
+public final class AdaptiveRunner {
+
+  /** The estimate of one parameter combination of a benchmark method, built up fork by fork. */
+  private static class Estimate {
+    final ListStatistics forkMeans = new ListStatistics();
+
+    final String label;
+
+    final String unit;
+
+    Estimate(String label, String unit) {
+      this.label = label;
+      this.unit = unit;
+    }
+
+    double relativeError() {
+      double error = forkMeans.getMeanErrorAt(CONFIDENCE) / Math.abs(forkMeans.getMean());
+      return Double.isNaN(error) ? Double.POSITIVE_INFINITY : error;
+    }
+  }
+
+  private static final double CONFIDENCE = 0.95;
+
+  private static final int MAX_FORKS = 10;
+
+  private static final int MAX_MEASUREMENT_ITERATIONS = 20;
+
+  private static final int MIN_FORKS = 3;
+
+  private static final int MIN_MEASUREMENT_ITERATIONS = 5;
+
+  private static final int PILOT_ITERATIONS = 25;
+
+  private static final double STEADY_STATE_TOLERANCE = 0.02;
+
+  private static final int WINDOW = 5;
+
+  private static final double Z_95 = 1.96;
+
+  /**
+   * Runs the benchmarks selected by the arguments adaptively and prints a summary.
+   *
+   * @param args the JMH command line options.
+   * @throws CommandLineOptionException if the options cannot be parsed.
+   * @throws RunnerException if a benchmark fails.
+   */
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    CommandLineOptions options = new CommandLineOptions(args);
+    double targetError =
+        Double.parseDouble(System.getProperty("microbenchmarks.targetError", "0.01"));
+
+    List<String> includes = options.getIncludes();
+    if (includes.isEmpty()) {
+      includes = Collections.singletonList(".*");
+    }
+    Set<BenchmarkListEntry> entries =
+        BenchmarkList.defaultList()
+            .find(
+                OutputFormatFactory.createFormatInstance(System.out, VerboseMode.SILENT),
+                includes,
+                options.getExcludes());
+    Set<String> names = new LinkedHashSet<>();
+    Set<String> singleShotNames = new LinkedHashSet<>();
+    for (BenchmarkListEntry entry : entries) {
+      names.add(entry.getUsername());
+      if (entry.getMode() == Mode.SingleShotTime) {
+        singleShotNames.add(entry.getUsername());
+      }
+    }
+
+    AdaptiveRunner runner = new AdaptiveRunner(options, names, targetError);
+    List<Estimate> estimates = new ArrayList<>();
+    for (String name : names) {
+      if (singleShotNames.contains(name)) {
+        runner.runAsAnnotated(name);
+      } else {
+        estimates.addAll(runner.runAdaptively(name));
+      }
+    }
+
+    System.out.println();
+    System.out.printf(
+        "%-80s %16s %12s %6s  %s%n", "Benchmark", "Score", "Error", "Forks", "Units");
+    for (Estimate estimate : estimates) {
+      System.out.printf(
+          "%-80s %16.3f %11.2f%% %6d  %s%n",
+          estimate.label,
+          estimate.forkMeans.getMean(),
+          estimate.relativeError() * 100.0,
+          estimate.forkMeans.getN(),
+          estimate.unit);
+    }
+    System.out.printf("Iterations run: %d%n", runner.iterationsRun);
+  }
+
+  /** Identifies a result by benchmark, mode and parameters, as a method can have several modes. */
+  private static String label(BenchmarkParams params) {
+    StringBuilder b = new StringBuilder(params.getBenchmark());
+    b.append('/').append(params.getMode().shortLabel());
+    for (Object key : params.getParamsKeys()) {
+      b.append(' ').append(key).append('=').append(params.getParam((String) key));
+    }
+    return b.toString();
+  }
+
+  private static double[] scores(BenchmarkResult result) {
+    Collection<IterationResult> iterations = result.getIterationResults();
+    double[] scores = new double[iterations.size()];
+    int i = 0;
+    for (IterationResult iteration : iterations) {
+      scores[i++] = iteration.getPrimaryResult().getScore();
+    }
+    return scores;
+  }
+
+  private static double mean(double[] scores, int from, int to) {
+    double sum = 0.0;
+    for (int i = from; i < to; ++i) {
+      sum += scores[i];
+    }
+    return sum / (to - from);
+  }
+
+  /**
+   * Finds the number of iterations to discard as warmup; the start of the first window whose mean
+   * is close to the mean of the last window.
+   */
+  static int steadyStateStart(double[] scores) {
+    double tailMean = mean(scores, scores.length - WINDOW, scores.length);
+    for (int start = 0; start < scores.length - WINDOW; ++start) {
+      double windowMean = mean(scores, start, start + WINDOW);
+      if (Math.abs(windowMean - tailMean) <= STEADY_STATE_TOLERANCE * Math.abs(tailMean)) {
+        return start;
+      }
+    }
+    return scores.length - WINDOW;
+  }
+
+  private final Set<String> names;
+
+  private final Options options;
+
+  private final double targetError;
+
+  long iterationsRun;
+
+  private AdaptiveRunner(Options options, Set<String> names, double targetError) {
+    this.options = options;
+    this.names = names;
+    this.targetError = targetError;
+  }
+
+  /**
+   * Builds the options for one benchmark method. The options inherit the command line, whose
+   * includes cannot be overridden, so every other selected benchmark method is excluded instead.
+   */
+  private OptionsBuilder optionsFor(String name) {
+    OptionsBuilder builder = new OptionsBuilder();
+    builder.parent(options);
+    for (String other : names) {
+      if (!other.equals(name)) {
+        builder.exclude("^" + Pattern.quote(other) + "$");
+      }
+    }
+    builder.verbosity(options.verbosity().orElse(VerboseMode.SILENT));
+    return builder;
+  }
+
+  private Collection<RunResult> runFork(
+      String name, int warmupIterations, int measurementIterations) throws RunnerException {
+    Options forkOptions =
+        optionsFor(name)
+            .forks(1)
+            .warmupIterations(warmupIterations)
+            .measurementIterations(measurementIterations)
+            .build();
+    Collection<RunResult> results = new Runner(forkOptions).run();
+    iterationsRun += (long) results.size() * (warmupIterations + measurementIterations);
+    return results;
+  }
+
+  private void runAsAnnotated(String name) throws RunnerException {
+    System.out.printf("%s: single shot, running as annotated%n", name);
+    new Runner(optionsFor(name).verbosity(VerboseMode.NORMAL).build()).run();
+  }
+
+  private Collection<Estimate> runAdaptively(String name) throws RunnerException {
+    Map<String, Estimate> estimates = new LinkedHashMap<>();
+    int warmupIterations = 0;
+    int measurementIterations = MIN_MEASUREMENT_ITERATIONS;
+    for (RunResult result : runFork(name, 0, PILOT_ITERATIONS)) {
+      BenchmarkResult forkResult = result.getBenchmarkResults().iterator().next();
+      double[] scores = scores(forkResult);
+      int steadyStart = steadyStateStart(scores);
+      ListStatistics steady = new ListStatistics();
+      for (int i = steadyStart; i < scores.length; ++i) {
+        steady.addValue(scores[i]);
+      }
+      double variation = steady.getStandardDeviation() / Math.abs(steady.getMean());
+      int needed = (int) Math.ceil(Math.pow(Z_95 * variation / targetError, 2.0));
+
+      warmupIterations = Math.max(warmupIterations, steadyStart);
+      measurementIterations =
+          Math.max(measurementIterations, Math.min(needed, MAX_MEASUREMENT_ITERATIONS));
+
+      String label = label(result.getParams());
+      Estimate estimate = new Estimate(label, forkResult.getScoreUnit());
+      estimate.forkMeans.addValue(steady.getMean());
+      estimates.put(label, estimate);
+    }
+    System.out.printf(
+        "%s: %d warmup and %d measurement iterations per fork%n",
+        name, warmupIterations, measurementIterations);
+
+    int forks = 1;
+    while (forks < MAX_FORKS && (forks < MIN_FORKS || !precise(estimates.values()))) {
+      for (RunResult result : runFork(name, warmupIterations, measurementIterations)) {
+        Estimate estimate = estimates.get(label(result.getParams()));
+        estimate.forkMeans.addValue(result.getPrimaryResult().getScore());
+      }
+      ++forks;
+    }
+    System.out.printf("%s: %d forks%n", name, forks);
+    return estimates.values();
+  }
+
+  private boolean precise(Collection<Estimate> estimates) {
+    for (Estimate estimate : estimates) {
+      if (estimate.relativeError() > targetError) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import com.github.brentworden.microbenchmarks.Coders.TestObject;
+import com.github.brentworden.microbenchmarks.Coders.TestObjectCoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.beam.runners.direct.DirectOptions;
+import org.apache.beam.runners.direct.DirectRunner;
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.PipelineResult;
+import org.apache.beam.sdk.coders.AvroCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.SerializableCoder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.transforms.Combine;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.GroupByKey;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.values.KV;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collection of benchmarks that measure the throughput of a whole Apache Beam pipeline, run locally
+ * with the {@link DirectRunner}, for each of the {@link Coder} implementations measured in
+ * isolation by {@link Coders}. The pipeline creates the test objects, keys them, groups them by key
+ * and combines each group, so the coder is used by {@link Create}, by the {@link GroupByKey}
+ * shuffle and by the runner's immutability and encodability checks.
+ *
+ * <p>Elements per second are reported as a secondary result. Run with {@code -prof
+ * com.github.brentworden.microbenchmarks.GaugeProfiler} to also report the garbage collection time
+ * of each iteration, averaged across iterations. The {@link DirectRunner} of the Beam version used
+ * here only runs on Java 8 and 11; use {@code -jvm} to point JMH at such a JVM when building with a
+ * later JDK.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 20, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(10)
+public class BeamPipeline {
+
+  /** Adds up the lengths of the strings of the test objects in a group. */
+  static class TotalLengthFn extends Combine.CombineFn<TestObject, Long, Long> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Long addInput(Long accumulator, TestObject input) {
+      long length = input.getNonNullableStringValue().length();
+      if (input.getNullableStringValue() != null) {
+        length += input.getNullableStringValue().length();
+      }
+      return accumulator + length;
+    }
+
+    @Override
+    public Long createAccumulator() {
+      return 0L;
+    }
+
+    @Override
+    public Long extractOutput(Long accumulator) {
+      return accumulator;
+    }
+
+    @Override
+    public Long mergeAccumulators(Iterable<Long> accumulators) {
+      long total = 0;
+      for (Long accumulator : accumulators) {
+        total += accumulator;
+      }
+      return total;
+    }
+  }
+
+  /** Keys a test object by its integer value. */
+  static class KeyByIntValueFn extends DoFn<TestObject, KV<Integer, TestObject>> {
+    private static final long serialVersionUID = 1L;
+
+    @ProcessElement
+    public void processElement(ProcessContext context) {
+      TestObject testObject = context.element();
+      context.output(KV.of(testObject.getIntValue() % KEY_COUNT, testObject));
+    }
+  }
+
+  /**
+   * State used by the benchmarks to hold onto the test objects and coder so their construction is
+   * not considered part of the test.
+   */
+  @State(Scope.Benchmark)
+  public static class StatePipeline {
+    Coder<TestObject> coder;
+
+    @Param({"avro", "custom", "serializable"})
+    String coderName;
+
+    @Param({"1000", "10000"})
+    int elementCount;
+
+    List<TestObject> testObjects;
+
+    @Setup(Level.Trial)
+    public void onTrialSetup() throws IOException {
+      switch (coderName) {
+        case "avro":
+          coder = AvroCoder.of(TestObject.class);
+          break;
+        case "custom":
+          coder = TestObjectCoder.of();
+          break;
+        case "serializable":
+          coder = SerializableCoder.of(TestObject.class);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown coder: " + coderName);
+      }
+
+      MappedCorpus corpus =
+          MappedCorpus.open(
+              "pipeline-testobjects-" + elementCount,
+              (workload, writer) -> {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream(100);
+                for (int i = 0; i < elementCount; ++i) {
+                  bos.reset();
+                  TestObjectCoder.of().encode(workload.nextTestObject(), bos);
+                  writer.write(bos.toByteArray());
+                }
+              });
+      testObjects = new ArrayList<>(corpus.size());
+      for (int i = 0; i < corpus.size(); ++i) {
+        testObjects.add(TestObjectCoder.of().decode(new ByteArrayInputStream(corpus.bytes(i))));
+      }
+    }
+  }
+
+  /** State used by the benchmarks to report the number of elements processed per second. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class StateElements {
+    public long elements;
+  }
+
+  /** State used by the benchmarks to report the garbage collection time of each iteration. */
+  @State(Scope.Thread)
+  public static class StateGc {
+    private long gcTimeAtStart;
+
+    @Setup(Level.Iteration)
+    public void onIterationSetup() {
+      gcTimeAtStart = totalGcTimeMillis();
+    }
+
+    @TearDown(Level.Iteration)
+    public void onIterationTearDown() {
+      GaugeProfiler.record("gcTime", totalGcTimeMillis() - gcTimeAtStart, "ms");
+    }
+  }
+
+  private static final int KEY_COUNT = 100;
+
+  private static long totalGcTimeMillis() {
+    long total = 0;
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      total += Math.max(0, bean.getCollectionTime());
+    }
+    return total;
+  }
+
+  /**
+   * Benchmark that measures the throughput of running a Create, ParDo, GroupByKey and Combine
+   * pipeline on the {@link DirectRunner}.
+   */
+  @Benchmark
+  public PipelineResult.State createKeyGroupCombine(
+      StatePipeline state, StateElements elements, StateGc gc) {
+    DirectOptions options = PipelineOptionsFactory.as(DirectOptions.class);
+    options.setRunner(DirectRunner.class);
+    options.setBlockOnRun(true);
+
+    Pipeline pipeline = Pipeline.create(options);
+    pipeline
+        .apply(Create.of(state.testObjects).withCoder(state.coder))
+        .apply(ParDo.of(new KeyByIntValueFn()))
+        .setCoder(KvCoder.of(VarIntCoder.of(), state.coder))
+        .apply(GroupByKey.create())
+        .apply(Combine.groupedValues(new TotalLengthFn()));
+    PipelineResult.State result = pipeline.run().waitUntilFinish();
+
+    elements.elements += state.elementCount;
+    return result;
+  }
+}
@@ -39,7 +39,6 @@ import java.io.Serializable;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.avro.reflect.Nullable;
-import org.apache.beam.repackaged.core.org.apache.commons.lang3.RandomStringUtils;
 import org.apache.beam.sdk.coders.AtomicCoder;
 import org.apache.beam.sdk.coders.AvroCoder;
 import org.apache.beam.sdk.coders.BooleanCoder;
@@ -60,6 +59,7 @@ import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
 
 /**
  * Collection of benchmarks that measure the throughput of encoding and decoding using various
@@ -103,18 +103,16 @@ public class Coders {
 
     TestObject originalTestObject;
 
+    Workload workload;
+
     @Setup(Level.Iteration)
     public void onIterationSetup() {
-      originalTestObject = new TestObject();
-      originalTestObject.setIntValue((int) (Math.random() * 100000.0));
-      originalTestObject.setNonNullableStringValue(
-          RandomStringUtils.randomAlphabetic((int) (Math.random() * 100.0) + 1));
-      if (Math.random() > 0.125) {
-        originalTestObject.setNullableStringValue(
-            RandomStringUtils.randomAlphabetic((int) (Math.random() * 100.0) + 1));
-      } else {
-        originalTestObject.setNullableStringValue(null);
-      }
+      originalTestObject = workload.nextTestObject();
+    }
+
+    @Setup(Level.Trial)
+    public void onTrialSetup(ThreadParams threadParams) {
+      workload = Workload.forThread(threadParams.getThreadIndex());
     }
   }
 
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.brentworden.microbenchmarks.Coders.TestObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.beam.sdk.coders.AvroCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.SerializableCoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collection of benchmarks that measure the time of the first use of several subsystems in a fresh
+ * JVM; serializer cache population, schema inference, pattern compilation and Java serialization
+ * class loading. Each fork runs a single invocation with no warmup so the cold cost is what is
+ * measured, and many forks are used to average over JVM start up noise.
+ *
+ * <p>The operations being measured must not be touched before the measured invocation, so the
+ * state only builds inputs that do not load or initialize the subsystem under test.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1, batchSize = 1)
+@Fork(50)
+public class ColdStart {
+
+  /**
+   * State used by the benchmarks to hold onto inputs so their construction is not considered part
+   * of the test.
+   */
+  @State(Scope.Benchmark)
+  public static class StateInputs {
+    Map<String, String> dictionary;
+
+    String regex;
+
+    TestObject testObject;
+
+    String value;
+
+    @Setup(Level.Trial)
+    public void onTrialSetup() {
+      dictionary = new LinkedHashMap<>();
+      for (int i = 0; i < 20; ++i) {
+        dictionary.put("key" + i, "value" + i);
+      }
+
+      regex = "^[abcd]+$";
+      value = "abcdab";
+
+      testObject = new TestObject();
+      testObject.setIntValue(12345);
+      testObject.setNonNullableStringValue("nonNullableStringValue");
+      testObject.setNullableStringValue("nullableStringValue");
+    }
+  }
+
+  /**
+   * Benchmark that measures the time of the first encode and decode using an {@link AvroCoder},
+   * including the schema inference done by {@link AvroCoder#of(Class)}.
+   */
+  @Benchmark
+  public TestObject firstAvroCoderRoundTrip(StateInputs state) throws IOException {
+    return roundTrip(AvroCoder.of(TestObject.class), state.testObject);
+  }
+
+  /**
+   * Benchmark that measures the time of the first serialization using a new {@link ObjectMapper}
+   * whose serializer cache is empty.
+   */
+  @Benchmark
+  public byte[] firstObjectMapperSerialization(StateInputs state) throws IOException {
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    objectMapper.configure(SerializationFeature.WRITE_NULL_MAP_VALUES, false);
+    objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+    objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+    objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    return objectMapper.writeValueAsBytes(state.dictionary);
+  }
+
+  /**
+   * Benchmark that measures the time of the first compilation and match using a {@link Pattern}.
+   */
+  @Benchmark
+  public boolean firstPatternCompile(StateInputs state) {
+    return Pattern.compile(state.regex).matcher(state.value).matches();
+  }
+
+  /**
+   * Benchmark that measures the time of the first encode and decode using a {@link
+   * SerializableCoder}.
+   */
+  @Benchmark
+  public TestObject firstSerializableCoderRoundTrip(StateInputs state) throws IOException {
+    return roundTrip(SerializableCoder.of(TestObject.class), state.testObject);
+  }
+
+  private TestObject roundTrip(Coder<TestObject> coder, TestObject testObject)
+      throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(1000);
+    coder.encode(testObject, bos);
+
+    ByteArrayInputStream bis = new ByteArrayInputStream(bos.toByteArray());
+    return coder.decode(bis);
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collection of benchmarks that measure the throughput of writing a colon separated composite key
+ * as UTF-8 into a reusable {@link ByteBuffer}, such as a network or storage buffer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 20, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(10)
+public class CompositeKeyEncoding {
+
+  /**
+   * State used by the benchmarks to hold onto {@link String} instances so their construction is not
+   * considered part of the test.
+   */
+  @State(Scope.Benchmark)
+  public static class StateKeyParts {
+    @Param({"true", "false"})
+    boolean ascii;
+
+    String[] parts;
+
+    final Workload workload = Workload.create();
+
+    @Setup(Level.Iteration)
+    public void onIterationSetup() {
+      parts = new String[5];
+      for (int i = 0; i < parts.length; ++i) {
+        parts[i] = ascii ? workload.nextString(10) : nextNonAsciiString(10);
+      }
+    }
+
+    private String nextNonAsciiString(int length) {
+      char[] c = workload.nextString(length).toCharArray();
+      for (int i = 0; i < length; ++i) {
+        if (workload.nextInt(5) == 0) {
+          c[i] = (char) ('\u00e0' + workload.nextInt(0x1F));
+        }
+      }
+      return new String(c);
+    }
+  }
+
+  /**
+   * State used by the benchmarks to hold onto the destination buffer so its construction is not
+   * considered part of the test.
+   */
+  @State(Scope.Thread)
+  public static class StateBuffer {
+    ByteBuffer buffer;
+
+    Utf8KeyBuilder builder;
+
+    @Param({"false", "true"})
+    boolean direct;
+
+    @Setup(Level.Trial)
+    public void onTrialSetup() {
+      buffer = direct ? ByteBuffer.allocateDirect(1024) : ByteBuffer.allocate(1024);
+      builder = new Utf8KeyBuilder(buffer);
+    }
+  }
+
+  /**
+   * Benchmark that measures the throughput of concatenating the key with the {@code +} operator,
+   * converting it to bytes, and copying the bytes into the buffer.
+   */
+  @Benchmark
+  public ByteBuffer concatenateThenGetBytes(StateKeyParts state, StateBuffer buffer) {
+    String[] p = state.parts;
+    String key = p[0] + ':' + p[1] + ':' + p[2] + ':' + p[3] + ':' + p[4];
+    ByteBuffer b = buffer.buffer;
+    // cast so a class file built by a later JDK links to the Java 8 method
+    ((Buffer) b).clear();
+    b.put(key.getBytes(StandardCharsets.UTF_8));
+    return b;
+  }
+
+  /**
+   * Benchmark that measures the throughput of converting each part of the key to bytes and copying
+   * them into the buffer, skipping the concatenated {@link String}.
+   */
+  @Benchmark
+  public ByteBuffer getBytesPerPart(StateKeyParts state, StateBuffer buffer) {
+    String[] p = state.parts;
+    ByteBuffer b = buffer.buffer;
+    ((Buffer) b).clear();
+    for (int i = 0; i < p.length; ++i) {
+      if (i > 0) {
+        b.put((byte) ':');
+      }
+      b.put(p[i].getBytes(StandardCharsets.UTF_8));
+    }
+    return b;
+  }
+
+  /**
+   * Benchmark that measures the throughput of encoding each part of the key directly into the
+   * buffer using a {@link Utf8KeyBuilder}.
+   */
+  @Benchmark
+  public ByteBuffer utf8KeyBuilder(StateKeyParts state, StateBuffer buffer) {
+    String[] p = state.parts;
+    ByteBuffer b = buffer.buffer;
+    ((Buffer) b).clear();
+    Utf8KeyBuilder builder = buffer.builder;
+    builder.append(p[0]);
+    for (int i = 1; i < p.length; ++i) {
+      builder.append(':').append(p[i]);
+    }
+    return b;
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.util.Arrays;
+
+/**
+ * A reusable tokenizer of delimited text that records the start and end offsets of each token
+ * instead of creating a {@link String} for it. Once its offset array has grown to fit the widest
+ * line, tokenizing allocates nothing. Empty tokens, including trailing ones, are kept.
+ */
+public final class DelimitedTokenizer {
+
+  private int count;
+
+  private final char delimiter;
+
+  private int[] offsets = new int[32];
+
+  private CharSequence source;
+
+  /**
+   * Creates a tokenizer for a delimiter.
+   *
+   * @param delimiter the character separating tokens.
+   */
+  public DelimitedTokenizer(char delimiter) {
+    this.delimiter = delimiter;
+  }
+
+  /**
+   * Returns the number of tokens found by the last call to {@link #tokenize(CharSequence)}.
+   *
+   * @return the number of tokens.
+   */
+  public int count() {
+    return count;
+  }
+
+  /**
+   * Returns the offset in the source just past the end of a token.
+   *
+   * @param index the index of the token.
+   * @return the end offset, exclusive.
+   */
+  public int end(int index) {
+    return offsets[index * 2 + 1];
+  }
+
+  /**
+   * Returns the offset in the source of the start of a token.
+   *
+   * @param index the index of the token.
+   * @return the start offset, inclusive.
+   */
+  public int start(int index) {
+    return offsets[index * 2];
+  }
+
+  /**
+   * Returns a token as a {@link String}. Unlike the other accessors, this allocates.
+   *
+   * @param index the index of the token.
+   * @return the token.
+   */
+  public String token(int index) {
+    return source.subSequence(start(index), end(index)).toString();
+  }
+
+  /**
+   * Splits the source into tokens, replacing the tokens of the previous call.
+   *
+   * @param source the delimited text.
+   * @return the number of tokens.
+   */
+  public int tokenize(CharSequence source) {
+    this.source = source;
+    int n = 0;
+    int start = 0;
+    int length = source.length();
+    for (int i = 0; i <= length; ++i) {
+      if (i == length || source.charAt(i) == delimiter) {
+        if (n * 2 + 2 > offsets.length) {
+          offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[n * 2] = start;
+        offsets[n * 2 + 1] = i;
+        ++n;
+        start = i + 1;
+      }
+    }
+    count = n;
+    return n;
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * A JMH profiler that reports values benchmark states measure at the end of an iteration, such as
+ * a snapshot of retained memory or a latency percentile. Unlike {@code @AuxCounters} events, which
+ * JMH sums across iterations, these values are averaged across iterations, and across the threads
+ * that recorded one in the same iteration.
+ *
+ * <p>Usage: {@code java -jar target/microbenchmarks.jar StringDeduplication -prof
+ * com.github.brentworden.microbenchmarks.GaugeProfiler}. States call {@link #record(String,
+ * double, String)} from an iteration level {@code @TearDown}, which runs before the profiler
+ * collects the values. Without the profiler the values are discarded.
+ */
+public class GaugeProfiler implements InternalProfiler {
+
+  /** The running total of the values recorded for one gauge during an iteration. */
+  private static final class Gauge {
+    int count;
+
+    double total;
+
+    final String unit;
+
+    Gauge(String unit) {
+      this.unit = unit;
+    }
+  }
+
+  private static final Map<String, Gauge> GAUGES = new ConcurrentHashMap<>();
+
+  private static final String PREFIX = "\u00b7gauge.";
+
+  /**
+   * Records a value for the current iteration.
+   *
+   * @param name the name of the gauge.
+   * @param value the value measured by the calling thread.
+   * @param unit the unit of the value.
+   */
+  public static void record(String name, double value, String unit) {
+    Gauge gauge = GAUGES.computeIfAbsent(name, key -> new Gauge(unit));
+    synchronized (gauge) {
+      ++gauge.count;
+      gauge.total += value;
+    }
+  }
+
+  @Override
+  public Collection<? extends Result> afterIteration(
+      BenchmarkParams benchmarkParams, IterationParams iterationParams, IterationResult result) {
+    List<ScalarResult> results = new ArrayList<>();
+    for (Map.Entry<String, Gauge> entry : GAUGES.entrySet()) {
+      Gauge gauge = entry.getValue();
+      synchronized (gauge) {
+        results.add(
+            new ScalarResult(
+                PREFIX + entry.getKey(),
+                gauge.total / gauge.count,
+                gauge.unit,
+                AggregationPolicy.AVG));
+      }
+    }
+    GAUGES.clear();
+    return results;
+  }
+
+  @Override
+  public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+    GAUGES.clear();
+  }
+
+  @Override
+  public String getDescription() {
+    return "Values recorded by benchmark states at the end of each iteration";
+  }
+}
@@ -32,7 +32,6 @@ package com.github.brentworden.microbenchmarks;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 import org.openjdk.jmh.annotations.Benchmark;
@@ -42,10 +41,12 @@ import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
 
 /**
  * Collection of benchmarks that measure the throughput of accessing values from a {@link HashMap};
@@ -67,8 +68,6 @@ public class HashMapAccess {
   public static class StateHashMap {
     final Map<Integer, Integer> map = new HashMap<>();
 
-    final Random rng = new Random();
-
     int total = 0;
 
     @Setup(Level.Trial)
@@ -80,13 +79,41 @@ public class HashMapAccess {
     }
   }
 
+  /**
+   * State used by the benchmarks to hold onto a sequence of keys, generated per thread, so random
+   * number generation is not considered part of the test. With the uniform distribution about one
+   * in eleven keys is not in the map.
+   */
+  @State(Scope.Thread)
+  public static class StateKeys {
+    @Param({"UNIFORM"})
+    Workload.Distribution distribution;
+
+    int index;
+
+    int[] keys;
+
+    @Setup(Level.Trial)
+    public void onTrialSetup(ThreadParams threadParams) {
+      keys = Workload.forThread(threadParams.getThreadIndex()).keys(distribution, 55, KEY_COUNT);
+    }
+
+    int nextKey() {
+      int key = keys[index];
+      index = (index + 1) & (KEY_COUNT - 1);
+      return key;
+    }
+  }
+
+  private static final int KEY_COUNT = 4096;
+
   /**
    * Benchmark the measures the throughput of accessing values by first checking if the map contains
    * the key and then returning the value if it does.
    */
   @Benchmark
-  public Integer containsAndGet(StateHashMap state) {
-    Integer key = Integer.valueOf(state.rng.nextInt(55));
+  public Integer containsAndGet(StateHashMap state, StateKeys keys) {
+    Integer key = Integer.valueOf(keys.nextKey());
     if (state.map.containsKey(key)) {
       return state.map.get(key);
     }
@@ -98,8 +125,8 @@ public class HashMapAccess {
    * returning the value if it is not null.
    */
   @Benchmark
-  public Integer getAndNullCheck(StateHashMap state) {
-    Integer key = Integer.valueOf(state.rng.nextInt(55));
+  public Integer getAndNullCheck(StateHashMap state, StateKeys keys) {
+    Integer key = Integer.valueOf(keys.nextKey());
     Integer value = state.map.get(key);
     if (value == null) {
       return key;
@@ -32,7 +32,6 @@ package com.github.brentworden.microbenchmarks;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 import org.openjdk.jmh.annotations.Benchmark;
@@ -66,8 +65,6 @@ public class HashMapValueIteration {
   public static class StateHashMap {
     final Map<Integer, Integer> map = new HashMap<>();
 
-    final Random rng = new Random();
-
     int total = 0;
 
     @Setup(Level.Trial)
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collection of benchmarks that measure the throughput of reading JSON into usable objects using
+ * Jackson; a tree, a map, a POJO, and manual token handling. Each approach is measured reading from
+ * both a {@link String} and a byte array.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 20, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(10)
+public class JsonDeserialization {
+
+  /**
+   * State used by the benchmarks to hold onto Jackson objects and JSON content so their
+   * construction is not considered part of the test.
+   *
+   * <p>The JSON content is the same kind of flat string dictionary used by {@link JsonValidation},
+   * except that the first entries are the properties of {@link TestRecord} so the POJO benchmarks
+   * bind real fields rather than only unknown properties.
+   */
+  @State(Scope.Benchmark)
+  public static class StateJson {
+    static final JsonFactory jsonFactory;
+
+    static final ObjectReader mapReader;
+
+    static final ObjectMapper objectMapper;
+
+    static final ObjectReader pojoReader;
+
+    static {
+      objectMapper = new ObjectMapper();
+
+      objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+      objectMapper.configure(SerializationFeature.WRITE_NULL_MAP_VALUES, false);
+      objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+      objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+      objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+      jsonFactory = objectMapper.getFactory();
+      mapReader = objectMapper.readerFor(new TypeReference<Map<String, String>>() {});
+      pojoReader = objectMapper.readerFor(TestRecord.class);
+    }
+
+    byte[] jsonBytes;
+
+    String jsonString;
+
+    final Workload workload = Workload.create();
+
+    @Setup(Level.Iteration)
+    public void onIterationSetup() throws JsonProcessingException {
+      Map<String, String> dictionary = new LinkedHashMap<>();
+      dictionary.put("id", workload.nextString(5, 19));
+      dictionary.put("name", workload.nextString(5, 19));
+      dictionary.put("category", workload.nextString(5, 19));
+      dictionary.put("status", workload.nextString(5, 19));
+      int size = workload.nextInt(10, 49);
+      while (dictionary.size() < size) {
+        dictionary.put(workload.nextString(5, 9), workload.nextString(5, 19));
+      }
+
+      jsonString = new ObjectMapper().writeValueAsString(dictionary);
+      jsonBytes = jsonString.getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * The POJO type that JSON content is read into. Properties without a matching field are collected
+   * into {@link #getOther()}, which is written back out as top level properties.
+   */
+  public static class TestRecord {
+    private String category;
+
+    private String id;
+
+    private String name;
+
+    private final Map<String, String> other = new LinkedHashMap<>();
+
+    private String status;
+
+    public String getCategory() {
+      return category;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    @JsonAnyGetter
+    public Map<String, String> getOther() {
+      return other;
+    }
+
+    public String getStatus() {
+      return status;
+    }
+
+    public void setCategory(String value) {
+      this.category = value;
+    }
+
+    public void setId(String value) {
+      this.id = value;
+    }
+
+    public void setName(String value) {
+      this.name = value;
+    }
+
+    @JsonAnySetter
+    public void setOther(String key, String value) {
+      other.put(key, value);
+    }
+
+    public void setStatus(String value) {
+      this.status = value;
+    }
+  }
+
+  /**
+   * Benchmark that measures the throughput of reading a byte array into a {@link Map} using an
+   * {@link ObjectReader}.
+   */
+  @Benchmark
+  public Map<String, String> readMapFromBytes(StateJson state) throws IOException {
+    return StateJson.mapReader.readValue(state.jsonBytes);
+  }
+
+  /**
+   * Benchmark that measures the throughput of reading a {@link String} into a {@link Map} using an
+   * {@link ObjectReader}.
+   */
+  @Benchmark
+  public Map<String, String> readMapFromString(StateJson state) throws IOException {
+    return StateJson.mapReader.readValue(state.jsonString);
+  }
+
+  /**
+   * Benchmark that measures the throughput of reading a byte array into a POJO using a prebuilt
+   * {@link ObjectReader}.
+   */
+  @Benchmark
+  public TestRecord readPojoFromBytes(StateJson state) throws IOException {
+    return StateJson.pojoReader.readValue(state.jsonBytes);
+  }
+
+  /**
+   * Benchmark that measures the throughput of reading a {@link String} into a POJO using a prebuilt
+   * {@link ObjectReader}.
+   */
+  @Benchmark
+  public TestRecord readPojoFromString(StateJson state) throws IOException {
+    return StateJson.pojoReader.readValue(state.jsonString);
+  }
+
+  /**
+   * Benchmark that measures the throughput of reading a byte array into a POJO by handling the
+   * tokens of a {@link JsonParser} manually.
+   */
+  @Benchmark
+  public TestRecord readStreamingFromBytes(StateJson state) throws IOException {
+    try (JsonParser parser = StateJson.jsonFactory.createParser(state.jsonBytes)) {
+      return readTestRecord(parser);
+    }
+  }
+
+  /**
+   * Benchmark that measures the throughput of reading a {@link String} into a POJO by handling the
+   * tokens of a {@link JsonParser} manually.
+   */
+  @Benchmark
+  public TestRecord readStreamingFromString(StateJson state) throws IOException {
+    try (JsonParser parser = StateJson.jsonFactory.createParser(state.jsonString)) {
+      return readTestRecord(parser);
+    }
+  }
+
+  /**
+   * Benchmark that measures the throughput of reading a byte array into a {@link JsonNode} tree
+   * using an {@link ObjectMapper}.
+   */
+  @Benchmark
+  public JsonNode readTreeFromBytes(StateJson state) throws IOException {
+    return StateJson.objectMapper.readTree(state.jsonBytes);
+  }
+
+  /**
+   * Benchmark that measures the throughput of reading a {@link String} into a {@link JsonNode} tree
+   * using an {@link ObjectMapper}.
+   */
+  @Benchmark
+  public JsonNode readTreeFromString(StateJson state) throws IOException {
+    return StateJson.objectMapper.readTree(state.jsonString);
+  }
+
+  private TestRecord readTestRecord(JsonParser parser) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new JsonParseException(parser, "Expected start of object");
+    }
+
+    TestRecord record = new TestRecord();
+    String name;
+    while ((name = parser.nextFieldName()) != null) {
+      String value = parser.nextTextValue();
+      switch (name) {
+        case "category":
+          record.setCategory(value);
+          break;
+        case "id":
+          record.setId(value);
+          break;
+        case "name":
+          record.setName(value);
+          break;
+        case "status":
+          record.setStatus(value);
+          break;
+        default:
+          record.setOther(name, value);
+          break;
+      }
+    }
+    return record;
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collection of benchmarks that measure the throughput of parsing, validating and writing nested
+ * JSON documents generated by {@link JsonPayloads}. The shape of the documents is controlled by
+ * the benchmark parameters. Each document is generated once into a {@link MappedCorpus} that is
+ * shared by all forks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 20, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(10)
+public class JsonNestedPayloads {
+
+  /**
+   * State used by the benchmarks to hold onto Jackson objects and the generated document so their
+   * construction is not considered part of the test.
+   */
+  @State(Scope.Benchmark)
+  public static class StateJson {
+    static final JsonFactory jsonFactory;
+
+    static final ObjectMapper objectMapper;
+
+    static {
+      objectMapper = new ObjectMapper();
+
+      objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+      objectMapper.configure(SerializationFeature.WRITE_NULL_MAP_VALUES, false);
+      objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+      objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+      objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+      jsonFactory = objectMapper.getFactory();
+    }
+
+    @Param({"1", "4"})
+    int depth;
+
+    @Param({"0.01"})
+    double escapeDensity;
+
+    @Param({"8"})
+    int fanOut;
+
+    byte[] jsonBytes;
+
+    Map<String, Object> rawObject;
+
+    @Param({"1024", "65536", "1048576"})
+    int size;
+
+    @Param({"MIXED"})
+    JsonPayloads.ValueTypes valueTypes;
+
+    @Setup(Level.Trial)
+    public void onTrialSetup() throws IOException {
+      String name =
+          "nested-" + depth + "-" + escapeDensity + "-" + fanOut + "-" + valueTypes + "-" + size;
+      MappedCorpus corpus =
+          MappedCorpus.open(
+              name,
+              (workload, writer) ->
+                  writer.write(
+                      new ObjectMapper()
+                          .writeValueAsBytes(
+                              JsonPayloads.generate(
+                                  workload.random(),
+                                  depth,
+                                  fanOut,
+                                  valueTypes,
+                                  escapeDensity,
+                                  size))));
+      jsonBytes = corpus.bytes(0);
+      rawObject = objectMapper.readValue(jsonBytes, new TypeReference<Map<String, Object>>() {});
+    }
+  }
+
+  /** State used by the benchmarks to report the size of the documents that are processed. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class StateBytes {
+    public long bytes;
+  }
+
+  /**
+   * Benchmark that measures the throughput of parsing a document into a {@link JsonNode} tree using
+   * an {@link ObjectMapper}.
+   */
+  @Benchmark
+  public JsonNode readTree(StateJson state, StateBytes counter) throws IOException {
+    counter.bytes += state.jsonBytes.length;
+    return StateJson.objectMapper.readTree(state.jsonBytes);
+  }
+
+  /**
+   * Benchmark that measures the throughput of validating the structure of a document using a
+   * {@link JsonParser}.
+   */
+  @Benchmark
+  public boolean validationUsingJsonParser(StateJson state, StateBytes counter) {
+    counter.bytes += state.jsonBytes.length;
+    try (JsonParser parser = StateJson.jsonFactory.createParser(state.jsonBytes)) {
+      while (parser.nextToken() != null) {}
+      return true;
+    } catch (IOException ex) {
+      return false;
+    }
+  }
+
+  /** Benchmark that measures the throughput of writing a document directly to a byte array. */
+  @Benchmark
+  public byte[] writeBytes(StateJson state, StateBytes counter) throws JsonProcessingException {
+    byte[] bytes = StateJson.objectMapper.writeValueAsBytes(state.rawObject);
+    counter.bytes += bytes.length;
+    return bytes;
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generator and loader of the JSON documents used as payloads by the JSON benchmarks.
+ *
+ * <p>Generated documents are nested objects and arrays controlled by depth, fan-out, value types,
+ * escape density and approximate serialized size. A fixed corpus of generated documents is stored
+ * under {@code /json} on the classpath so benchmarks can also run against exactly the same bytes
+ * every time. Run {@link #main(String[])} with the resources directory to regenerate the corpus.
+ */
+public final class JsonPayloads {
+
+  /** The kinds of scalar values placed in the leaves of a generated document. */
+  public enum ValueTypes {
+    /** Only numbers; integers, longs and doubles. */
+    NUMBER,
+
+    /** Strings, numbers, booleans and nulls. */
+    MIXED,
+
+    /** Only ASCII strings. */
+    STRING,
+
+    /** Strings, numbers, booleans and nulls where strings contain non-ASCII characters. */
+    UNICODE
+  }
+
+  /** Corpus document of about a megabyte with deep nesting and unicode strings. */
+  public static final String CORPUS_LARGE = "nested-1mb.json";
+
+  /** Corpus document of tens of kilobytes with moderate nesting. */
+  public static final String CORPUS_MEDIUM = "nested-16kb.json";
+
+  /** Corpus document of a few hundred bytes with shallow nesting. */
+  public static final String CORPUS_SMALL = "nested-512b.json";
+
+  /** Payload name for the flat string dictionary generated by the original JSON benchmarks. */
+  public static final String FLAT = "flat";
+
+  private static final char[] ESCAPED_CHARACTERS = {'"', '\\', '\n', '\r', '\t', '\b', '\u0001'};
+
+  private static final char[] UNICODE_CHARACTERS = {
+    '\u00e9', '\u00fc', '\u00df', '\u03bb', '\u0436', '\u4e2d', '\u6587', '\u20ac'
+  };
+
+  /**
+   * Generates a nested document. The root is an object of records which are added until the
+   * serialized size of the document reaches roughly {@code size} bytes.
+   *
+   * @param rng the source of randomness.
+   * @param depth the number of container levels below each root record.
+   * @param fanOut the number of entries in each object or array.
+   * @param valueTypes the kinds of scalar values placed in the leaves.
+   * @param escapeDensity the probability that a string character needs escaping.
+   * @param size the approximate serialized size of the document in bytes.
+   * @return the document as a tree of maps, lists and scalar values.
+   */
+  public static Map<String, Object> generate(
+      Random rng, int depth, int fanOut, ValueTypes valueTypes, double escapeDensity, int size) {
+    Generator generator = new Generator(rng, fanOut, valueTypes, escapeDensity, size);
+    Map<String, Object> root = new LinkedHashMap<>();
+    generator.length += 2;
+    while (generator.length < size) {
+      String key = generator.nextKey();
+      generator.length += key.length() + 4;
+      root.put(key, generator.nextContainer(depth));
+    }
+    return root;
+  }
+
+  /**
+   * Loads a corpus document from the classpath.
+   *
+   * @param name the name of the document, e.g. {@link #CORPUS_MEDIUM}.
+   * @return the document content.
+   * @throws IOException if the document does not exist or cannot be read.
+   */
+  public static String loadCorpus(String name) throws IOException {
+    try (InputStream in = JsonPayloads.class.getResourceAsStream("/json/" + name)) {
+      if (in == null) {
+        throw new FileNotFoundException("JSON corpus document not found: " + name);
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * Writes the corpus documents to a directory using fixed seeds.
+   *
+   * @param args the resources directory, normally {@code src/main/resources}.
+   * @throws IOException if a document cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    Path directory = Paths.get(args[0], "json");
+    Files.createDirectories(directory);
+
+    ObjectMapper objectMapper = new ObjectMapper();
+    writeCorpus(
+        objectMapper,
+        directory.resolve(CORPUS_SMALL),
+        generate(new Random(1L), 2, 4, ValueTypes.MIXED, 0.02, 512));
+    writeCorpus(
+        objectMapper,
+        directory.resolve(CORPUS_MEDIUM),
+        generate(new Random(2L), 4, 8, ValueTypes.MIXED, 0.02, 16 * 1024));
+    writeCorpus(
+        objectMapper,
+        directory.resolve(CORPUS_LARGE),
+        generate(new Random(3L), 6, 12, ValueTypes.UNICODE, 0.05, 1024 * 1024));
+  }
+
+  private static void writeCorpus(ObjectMapper objectMapper, Path path, Object document)
+      throws IOException {
+    Files.write(path, objectMapper.writeValueAsBytes(document));
+  }
+
+  private JsonPayloads() {}
+
+  /** Builds a single document while keeping a running estimate of its serialized length. */
+  private static class Generator {
+    final double escapeDensity;
+
+    final int fanOut;
+
+    long length;
+
+    final Random rng;
+
+    final int size;
+
+    final ValueTypes valueTypes;
+
+    Generator(Random rng, int fanOut, ValueTypes valueTypes, double escapeDensity, int size) {
+      this.escapeDensity = escapeDensity;
+      this.fanOut = fanOut;
+      this.rng = rng;
+      this.size = size;
+      this.valueTypes = valueTypes;
+    }
+
+    Object nextContainer(int depth) {
+      length += 2;
+      if (rng.nextInt(4) == 0) {
+        List<Object> array = new ArrayList<>(fanOut);
+        for (int i = 0; i < fanOut && length < size; ++i) {
+          length += 1;
+          array.add(nextValue(depth - 1));
+        }
+        return array;
+      }
+
+      Map<String, Object> object = new LinkedHashMap<>();
+      for (int i = 0; i < fanOut && length < size; ++i) {
+        String key = nextKey();
+        length += key.length() + 4;
+        object.put(key, nextValue(depth - 1));
+      }
+      return object;
+    }
+
+    String nextKey() {
+      char[] c = new char[rng.nextInt(5) + 5];
+      for (int i = 0; i < c.length; ++i) {
+        c[i] = (char) ('a' + rng.nextInt('z' - 'a'));
+      }
+      return new String(c);
+    }
+
+    Object nextNumber() {
+      Object value;
+      switch (rng.nextInt(3)) {
+        case 0:
+          value = Integer.valueOf(rng.nextInt(100000));
+          break;
+        case 1:
+          value = Long.valueOf(rng.nextLong());
+          break;
+        default:
+          value = Double.valueOf(rng.nextDouble() * 1000000.0);
+          break;
+      }
+      length += value.toString().length();
+      return value;
+    }
+
+    Object nextScalar() {
+      switch (valueTypes) {
+        case NUMBER:
+          return nextNumber();
+        case STRING:
+          return nextString(false);
+        default:
+          int choice = rng.nextInt(10);
+          if (choice < 5) {
+            return nextString(valueTypes == ValueTypes.UNICODE);
+          } else if (choice < 8) {
+            return nextNumber();
+          } else if (choice < 9) {
+            length += 5;
+            return Boolean.valueOf(rng.nextBoolean());
+          }
+          length += 4;
+          return null;
+      }
+    }
+
+    String nextString(boolean unicode) {
+      char[] c = new char[rng.nextInt(15) + 5];
+      length += 2;
+      for (int i = 0; i < c.length; ++i) {
+        if (rng.nextDouble() < escapeDensity) {
+          c[i] = ESCAPED_CHARACTERS[rng.nextInt(ESCAPED_CHARACTERS.length)];
+          length += c[i] == '\u0001' ? 6 : 2;
+        } else if (unicode && rng.nextInt(5) == 0) {
+          c[i] = UNICODE_CHARACTERS[rng.nextInt(UNICODE_CHARACTERS.length)];
+          length += c[i] < '\u0800' ? 2 : 3;
+        } else {
+          c[i] = (char) ('a' + rng.nextInt('z' - 'a'));
+          length += 1;
+        }
+      }
+      return new String(c);
+    }
+
+    Object nextValue(int depth) {
+      if (depth <= 0) {
+        return nextScalar();
+      }
+      return nextContainer(depth);
+    }
+  }
+}
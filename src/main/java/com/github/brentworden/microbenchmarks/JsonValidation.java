@@ -39,9 +39,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
 import java.io.IOException;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 import org.openjdk.jmh.annotations.Benchmark;
@@ -51,6 +48,7 @@ import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -69,6 +67,9 @@ public class JsonValidation {
   /**
    * State used by the benchmarks to hold onto Jackson objects so their construction is not
    * considered part of the test.
+   *
+   * <p>By default the JSON content is a random flat string dictionary. Set the {@code payload}
+   * parameter to the name of a {@link JsonPayloads} corpus document to validate it instead.
    */
   @State(Scope.Benchmark)
   public static class StateJson {
@@ -96,26 +97,27 @@ public class JsonValidation {
 
     String jsonStringInvalidMiddle;
 
-    final Random rng = new Random();
+    @Param({JsonPayloads.FLAT})
+    String payload;
+
+    final Workload workload = Workload.create();
 
     @Setup(Level.Iteration)
-    public void onIterationSetup() throws JsonProcessingException {
-      Map<String, String> dictionary = new LinkedHashMap<>();
-      int size = rng.nextInt(40) + 10;
-      for (int i = 0; i < size; ++i) {
-        int keySize = rng.nextInt(5) + 5;
-        String key = randomString(keySize);
-        int valueSize = rng.nextInt(15) + 5;
-        String value = randomString(valueSize);
-        dictionary.put(key, value);
+    public void onIterationSetup() throws IOException {
+      if (JsonPayloads.FLAT.equals(payload)) {
+        jsonString = generateFlatDictionary();
+      } else {
+        jsonString = JsonPayloads.loadCorpus(payload);
       }
-
-      jsonString = new ObjectMapper().writeValueAsString(dictionary);
       jsonStringInvalidBeginning = makeInvalidAtBeginning(jsonString);
       jsonStringInvalidEnding = makeInvalidAtEnding(jsonString);
       jsonStringInvalidMiddle = makeInvalidInMiddle(jsonString);
     }
 
+    private String generateFlatDictionary() throws JsonProcessingException {
+      return new ObjectMapper().writeValueAsString(workload.nextDictionary());
+    }
+
     private String makeInvalidAtBeginning(String jsonString) {
       return jsonString.substring(1);
     }
@@ -127,14 +129,6 @@ public class JsonValidation {
     private String makeInvalidInMiddle(String jsonString) {
       return "[" + jsonString + jsonString + "]";
     }
-
-    private String randomString(int length) {
-      char[] c = new char[length];
-      for (int i = 0; i < length; ++i) {
-        c[i] = (char) ('a' + rng.nextInt('z' - 'a'));
-      }
-      return new String(c);
-    }
   }
 
   /**
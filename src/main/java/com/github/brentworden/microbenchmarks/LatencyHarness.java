@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.brentworden.microbenchmarks.Coders.TestObject;
+import com.github.brentworden.microbenchmarks.Coders.TestObjectCoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives one operation at a fixed target rate and reports its latency percentiles. Unlike the JMH
+ * benchmarks, which run operations back to back, requests here are scheduled at a constant
+ * interval, the way a service receives them.
+ *
+ * <p>Each request has an intended start time of {@code start + i * interval}. Its response time is
+ * measured from that intended start rather than from when it actually began, so when an operation
+ * stalls, the requests that queued up behind it are charged for the wait. Measuring only the
+ * service time hides those stalls (coordinated omission); both are reported. The driver spins
+ * between requests to keep the schedule precise, so it occupies one core.
+ *
+ * <p>Usage: {@code java -cp target/microbenchmarks.jar
+ * com.github.brentworden.microbenchmarks.LatencyHarness <operation> [rate per second] [duration
+ * seconds] [warmup seconds]} where the operation is one of {@code coderRoundTrip}, {@code
+ * jsonValidation}, {@code mapLookup} or {@code writeValueAsBytes}.
+ */
+public final class LatencyHarness {
+
+  /** An operation driven by the harness. */
+  interface Operation {
+    Object run() throws Exception;
+  }
+
+  private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9, 99.99};
+
+  private static final int INPUT_COUNT = 1024;
+
+  static volatile int sink;
+
+  private static Operation coderRoundTrip(Workload workload) {
+    TestObjectCoder coder = TestObjectCoder.of();
+    TestObject[] testObjects = new TestObject[INPUT_COUNT];
+    for (int i = 0; i < INPUT_COUNT; ++i) {
+      testObjects[i] = workload.nextTestObject();
+    }
+    int[] index = new int[1];
+    return () -> {
+      TestObject testObject = testObjects[index[0]++ & (INPUT_COUNT - 1)];
+      ByteArrayOutputStream bos = new ByteArrayOutputStream(1000);
+      coder.encode(testObject, bos);
+      return coder.decode(new ByteArrayInputStream(bos.toByteArray()));
+    };
+  }
+
+  private static Operation jsonValidation(Workload workload, ObjectMapper objectMapper)
+      throws IOException {
+    JsonFactory jsonFactory = objectMapper.getFactory();
+    String[] jsonStrings = new String[INPUT_COUNT];
+    for (int i = 0; i < INPUT_COUNT; ++i) {
+      jsonStrings[i] = objectMapper.writeValueAsString(workload.nextDictionary());
+    }
+    int[] index = new int[1];
+    return () -> {
+      try (JsonParser parser =
+          jsonFactory.createParser(jsonStrings[index[0]++ & (INPUT_COUNT - 1)])) {
+        while (parser.nextToken() != null) {}
+        return Boolean.TRUE;
+      } catch (IOException ex) {
+        return Boolean.FALSE;
+      }
+    };
+  }
+
+  private static Operation mapLookup(Workload workload) {
+    Map<Integer, Integer> map = new HashMap<>();
+    for (int i = 0; i < 50; ++i) {
+      map.put(Integer.valueOf(i), Integer.valueOf(i));
+    }
+    int[] keys = workload.keys(Workload.Distribution.UNIFORM, 55, INPUT_COUNT);
+    int[] index = new int[1];
+    return () -> map.get(Integer.valueOf(keys[index[0]++ & (INPUT_COUNT - 1)]));
+  }
+
+  private static Operation writeValueAsBytes(Workload workload, ObjectMapper objectMapper) {
+    Object[] dictionaries = new Object[INPUT_COUNT];
+    for (int i = 0; i < INPUT_COUNT; ++i) {
+      dictionaries[i] = workload.nextDictionary();
+    }
+    int[] index = new int[1];
+    return () -> objectMapper.writeValueAsBytes(dictionaries[index[0]++ & (INPUT_COUNT - 1)]);
+  }
+
+  static Operation createOperation(String name) throws IOException {
+    Workload workload = Workload.create();
+    ObjectMapper objectMapper = new ObjectMapper();
+    objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    objectMapper.configure(SerializationFeature.WRITE_NULL_MAP_VALUES, false);
+    objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+    objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+    objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    switch (name) {
+      case "coderRoundTrip":
+        return coderRoundTrip(workload);
+      case "jsonValidation":
+        return jsonValidation(workload, objectMapper);
+      case "mapLookup":
+        return mapLookup(workload);
+      case "writeValueAsBytes":
+        return writeValueAsBytes(workload, objectMapper);
+      default:
+        throw new IllegalArgumentException("Unknown operation: " + name);
+    }
+  }
+
+  /**
+   * Runs an operation at a fixed rate and prints its latency percentiles.
+   *
+   * @param args the operation, and optionally the rate per second (default 10000), the measured
+   *     duration in seconds (default 30) and the warmup duration in seconds (default 10).
+   * @throws Exception if the operation fails.
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      System.err.println(
+          "Usage: LatencyHarness <coderRoundTrip|jsonValidation|mapLookup|writeValueAsBytes>"
+              + " [rate per second] [duration seconds] [warmup seconds]");
+      System.exit(1);
+    }
+    Operation operation = createOperation(args[0]);
+    long rate = args.length > 1 ? Long.parseLong(args[1]) : 10000;
+    long duration = args.length > 2 ? Long.parseLong(args[2]) : 30;
+    long warmup = args.length > 3 ? Long.parseLong(args[3]) : 10;
+
+    LatencyHarness harness = new LatencyHarness(operation, rate);
+    harness.run(TimeUnit.SECONDS.toNanos(warmup));
+    harness.reset();
+    long elapsed = harness.run(TimeUnit.SECONDS.toNanos(duration));
+    harness.report(System.out, args[0], elapsed);
+  }
+
+  private final long intervalNanos;
+
+  private final Operation operation;
+
+  private final long rate;
+
+  private final LatencyHistogram responseTime = new LatencyHistogram();
+
+  private final LatencyHistogram serviceTime = new LatencyHistogram();
+
+  LatencyHarness(Operation operation, long rate) {
+    if (rate <= 0 || rate > TimeUnit.SECONDS.toNanos(1)) {
+      throw new IllegalArgumentException("Rate must be between 1 and 10^9 per second: " + rate);
+    }
+    this.operation = operation;
+    this.rate = rate;
+    this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+  }
+
+  void report(PrintStream out, String name, long elapsedNanos) {
+    out.printf(
+        "%s: %d requests at a target rate of %d/s, achieved %.1f/s%n",
+        name, responseTime.count(), rate, responseTime.count() * 1e9 / elapsedNanos);
+    out.printf("%-14s %14s %14s%n", "latency (us)", "response time", "service time");
+    for (double percentile : PERCENTILES) {
+      out.printf(
+          "%-14s %14.3f %14.3f%n",
+          "p" + percentile,
+          responseTime.percentile(percentile) / 1e3,
+          serviceTime.percentile(percentile) / 1e3);
+    }
+    out.printf(
+        "%-14s %14.3f %14.3f%n", "max", responseTime.max() / 1e3, serviceTime.max() / 1e3);
+    out.printf(
+        "%-14s %14.3f %14.3f%n", "mean", responseTime.mean() / 1e3, serviceTime.mean() / 1e3);
+  }
+
+  void reset() {
+    responseTime.reset();
+    serviceTime.reset();
+  }
+
+  long run(long durationNanos) throws Exception {
+    long start = System.nanoTime();
+    int hash = 0;
+    for (long i = 0; ; ++i) {
+      long intended = start + i * intervalNanos;
+      if (intended - start >= durationNanos) {
+        break;
+      }
+      while (System.nanoTime() - intended < 0) {
+        // spin until the request is due
+      }
+      long begin = System.nanoTime();
+      Object result = operation.run();
+      long end = System.nanoTime();
+      hash += System.identityHashCode(result);
+      serviceTime.record(end - begin);
+      responseTime.record(end - intended);
+    }
+    sink = hash;
+    return System.nanoTime() - start;
+  }
+}
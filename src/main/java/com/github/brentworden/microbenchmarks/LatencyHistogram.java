@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of latencies in nanoseconds with logarithmic buckets. Every power of two range is
+ * split into 128 linear sub-buckets, so recorded values are kept with a relative error below one
+ * percent from one nanosecond up to the largest {@code long}. The counts are held in one
+ * preallocated array; recording a value neither allocates nor locks, so a histogram must only be
+ * recorded into by one thread at a time.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 7;
+
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+  private static final int BUCKET_COUNT = 64 - SUB_BUCKET_BITS;
+
+  private static int index(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+  }
+
+  private static long highestValue(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    long lowest = (long) (SUB_BUCKET_COUNT + (index & (SUB_BUCKET_COUNT - 1))) << shift;
+    return lowest + ((1L << shift) - 1);
+  }
+
+  private final long[] counts = new long[BUCKET_COUNT << SUB_BUCKET_BITS];
+
+  private long count;
+
+  private long max;
+
+  private long min = Long.MAX_VALUE;
+
+  private double sum;
+
+  /**
+   * Adds all values recorded by another histogram to this one.
+   *
+   * @param other the other histogram.
+   */
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < counts.length; ++i) {
+      counts[i] += other.counts[i];
+    }
+    count += other.count;
+    max = Math.max(max, other.max);
+    min = Math.min(min, other.min);
+    sum += other.sum;
+  }
+
+  /**
+   * Returns the number of recorded values.
+   *
+   * @return the number of recorded values.
+   */
+  public long count() {
+    return count;
+  }
+
+  /**
+   * Returns the largest recorded value.
+   *
+   * @return the largest recorded value, or zero if the histogram is empty.
+   */
+  public long max() {
+    return max;
+  }
+
+  /**
+   * Returns the mean of the recorded values.
+   *
+   * @return the mean of the recorded values, or zero if the histogram is empty.
+   */
+  public double mean() {
+    return count == 0 ? 0.0 : sum / count;
+  }
+
+  /**
+   * Returns the smallest recorded value.
+   *
+   * @return the smallest recorded value, or zero if the histogram is empty.
+   */
+  public long min() {
+    return count == 0 ? 0 : min;
+  }
+
+  /**
+   * Returns the value at a percentile; the highest value that falls in the same bucket as the
+   * recorded value at that rank, capped at the largest recorded value.
+   *
+   * @param percentile the percentile, from {@code 0} to {@code 100}, e.g. {@code 99.9}.
+   * @return the value at the percentile, or zero if the histogram is empty.
+   */
+  public long percentile(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+    long cumulative = 0;
+    for (int i = 0; i < counts.length; ++i) {
+      cumulative += counts[i];
+      if (cumulative >= rank) {
+        return Math.min(highestValue(i), max);
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Records a value.
+   *
+   * @param value the value in nanoseconds; negative values are recorded as zero.
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    ++counts[index(value)];
+    ++count;
+    sum += value;
+    if (value > max) {
+      max = value;
+    }
+    if (value < min) {
+      min = value;
+    }
+  }
+
+  /** Removes all recorded values. */
+  public void reset() {
+    Arrays.fill(counts, 0);
+    count = 0;
+    max = 0;
+    min = Long.MAX_VALUE;
+    sum = 0.0;
+  }
+}
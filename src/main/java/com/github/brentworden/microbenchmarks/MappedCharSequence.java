@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read-only {@link CharSequence} view over single byte encoded (ASCII or ISO-8859-1) content in a
+ * {@link ByteBuffer}, typically a memory-mapped file. Characters are decoded on access, so content
+ * can be scanned, for instance by a {@link java.util.regex.Matcher}, without building a {@link
+ * String}. Sub-sequences are views over the same buffer.
+ */
+public final class MappedCharSequence implements CharSequence {
+
+  /**
+   * Memory maps a file as a list of character sequences. A character sequence is at most {@code
+   * maxChunkSize} characters long and, when possible, ends at a line feed so no line is split
+   * across two character sequences. This allows files larger than a single {@link CharSequence} can
+   * address to be scanned chunk by chunk.
+   *
+   * @param file the file to be mapped.
+   * @param maxChunkSize the maximum number of characters in each character sequence.
+   * @return the character sequences covering the whole file, in order.
+   * @throws IOException if the file cannot be mapped.
+   */
+  public static List<MappedCharSequence> map(Path file, int maxChunkSize) throws IOException {
+    List<MappedCharSequence> chunks = new ArrayList<>();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long position = 0;
+      while (position < size) {
+        int window = (int) Math.min(maxChunkSize, size - position);
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+        int length = window;
+        if (position + window < size) {
+          int lastLineFeed = window - 1;
+          while (lastLineFeed >= 0 && buffer.get(lastLineFeed) != '\n') {
+            --lastLineFeed;
+          }
+          if (lastLineFeed >= 0) {
+            length = lastLineFeed + 1;
+          }
+        }
+        chunks.add(new MappedCharSequence(buffer, 0, length));
+        position += length;
+      }
+    }
+    return chunks;
+  }
+
+  private final ByteBuffer buffer;
+
+  private final int length;
+
+  private final int offset;
+
+  /**
+   * Creates a character sequence over the remaining content of a buffer. The buffer's position and
+   * limit are not changed by this character sequence.
+   *
+   * @param buffer the buffer containing single byte encoded characters.
+   */
+  public MappedCharSequence(ByteBuffer buffer) {
+    this(buffer, buffer.position(), buffer.remaining());
+  }
+
+  private MappedCharSequence(ByteBuffer buffer, int offset, int length) {
+    this.buffer = buffer;
+    this.length = length;
+    this.offset = offset;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+    }
+    return (char) (buffer.get(offset + index) & 0xFF);
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new IndexOutOfBoundsException(
+          "start " + start + ", end " + end + ", length " + length);
+    }
+    return new MappedCharSequence(buffer, offset + start, end - start);
+  }
+
+  @Override
+  public String toString() {
+    byte[] bytes = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    // cast so a class file built by a later JDK links to the Java 8 method
+    ((Buffer) view).position(offset);
+    view.get(bytes);
+    return new String(bytes, StandardCharsets.ISO_8859_1);
+  }
+}
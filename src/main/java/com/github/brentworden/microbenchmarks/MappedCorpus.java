@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only collection of binary records stored in a file and memory-mapped by each benchmark
+ * JVM. A corpus is generated once from a {@link Workload} and kept in a cache directory, so forked
+ * JVMs skip generation in their setup and every fork measures exactly the same bytes.
+ *
+ * <p>The file holds a header (magic number, version, seed, record count and index position), the
+ * records back to back, and an index of record offsets. Corpus files are keyed by name and seed;
+ * the name must therefore identify everything else that shapes the records, such as benchmark
+ * parameters. The cache directory defaults to {@code microbenchmarks-corpus} under {@code
+ * java.io.tmpdir} and can be changed with the {@code microbenchmarks.corpus.dir} system property.
+ * Delete the directory to regenerate the corpora after changing a generator.
+ *
+ * <p>Buffers are cast to {@link Buffer} before {@code flip}, {@code limit} and {@code position}
+ * are called, so a class file built by JDK 9 or later still links on Java 8.
+ */
+public final class MappedCorpus {
+
+  /** Generator of the records of a corpus. */
+  public interface Generator {
+
+    /**
+     * Generates the records of a corpus.
+     *
+     * @param workload the source of random input.
+     * @param writer the writer the records are added to, in order.
+     * @throws IOException if a record cannot be generated or written.
+     */
+    void generate(Workload workload, RecordWriter writer) throws IOException;
+  }
+
+  /** Appends records to a corpus file while it is generated. */
+  public static final class RecordWriter {
+    private final FileChannel channel;
+
+    private int[] offsets = new int[1024];
+
+    private int position = HEADER_SIZE;
+
+    private int size;
+
+    private RecordWriter(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param record the content of the record.
+     * @throws IOException if the record cannot be written.
+     */
+    public void write(byte[] record) throws IOException {
+      write(record, 0, record.length);
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param bytes the array holding the content of the record.
+     * @param offset the offset of the record in {@code bytes}.
+     * @param length the length of the record.
+     * @throws IOException if the record cannot be written.
+     */
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      if ((long) position + length > Integer.MAX_VALUE) {
+        throw new IOException("Corpus larger than 2GB");
+      }
+      if (size == offsets.length) {
+        int[] grown = new int[size * 2];
+        System.arraycopy(offsets, 0, grown, 0, size);
+        offsets = grown;
+      }
+      offsets[size++] = position;
+      writeFully(ByteBuffer.wrap(bytes, offset, length), position);
+      position += length;
+    }
+
+    private void finish(long seed) throws IOException {
+      ByteBuffer index = ByteBuffer.allocate((size + 1) * 4).order(ByteOrder.LITTLE_ENDIAN);
+      for (int i = 0; i < size; ++i) {
+        index.putInt(offsets[i]);
+      }
+      index.putInt(position);
+      ((Buffer) index).flip();
+      writeFully(index, position);
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION).putLong(seed).putInt(size).putInt(position);
+      ((Buffer) header).flip();
+      writeFully(header, 0);
+    }
+
+    private void writeFully(ByteBuffer buffer, long at) throws IOException {
+      while (buffer.hasRemaining()) {
+        at += channel.write(buffer, at);
+      }
+    }
+  }
+
+  private static final int HEADER_SIZE = 24;
+
+  private static final int MAGIC = 0x4D42434F;
+
+  private static final int VERSION = 1;
+
+  /**
+   * Opens a corpus, generating it first if it is not already in the cache directory. Generation
+   * writes to a temporary file that is then moved into place, so JVMs opening the same corpus
+   * concurrently never see a partial file.
+   *
+   * @param name the name of the corpus, unique for the generator and its parameters.
+   * @param generator the generator of the records, only used when the corpus does not exist.
+   * @return the memory-mapped corpus.
+   * @throws IOException if the corpus cannot be generated or mapped.
+   */
+  public static MappedCorpus open(String name, Generator generator) throws IOException {
+    long seed = Workload.seed();
+    Path directory =
+        Paths.get(
+            System.getProperty(
+                "microbenchmarks.corpus.dir",
+                Paths.get(System.getProperty("java.io.tmpdir"), "microbenchmarks-corpus")
+                    .toString()));
+    Path file = directory.resolve(name + "-" + Long.toHexString(seed) + ".corpus");
+    if (!Files.exists(file)) {
+      Files.createDirectories(directory);
+      Path temporary = Files.createTempFile(directory, name, ".tmp");
+      try {
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+          RecordWriter writer = new RecordWriter(channel);
+          generator.generate(new Workload(seed), writer);
+          writer.finish(seed);
+        }
+        move(temporary, file);
+      } finally {
+        Files.deleteIfExists(temporary);
+      }
+    }
+    return map(file, seed);
+  }
+
+  private static MappedCorpus map(Path file, long seed) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Corpus larger than 2GB: " + file);
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.limit() < HEADER_SIZE
+        || buffer.getInt(0) != MAGIC
+        || buffer.getInt(4) != VERSION
+        || buffer.getLong(8) != seed) {
+      throw new IOException("Not a corpus file for seed " + seed + ": " + file);
+    }
+    return new MappedCorpus(buffer, buffer.getInt(16), buffer.getInt(20));
+  }
+
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException ex) {
+      try {
+        Files.move(source, target);
+      } catch (FileAlreadyExistsException alreadyGenerated) {
+        // another JVM generated the same corpus first
+      }
+    }
+  }
+
+  private final ByteBuffer buffer;
+
+  private final int indexPosition;
+
+  private final int size;
+
+  private MappedCorpus(ByteBuffer buffer, int size, int indexPosition) {
+    this.buffer = buffer;
+    this.size = size;
+    this.indexPosition = indexPosition;
+  }
+
+  /**
+   * Copies a record to a new heap byte array.
+   *
+   * @param index the index of the record.
+   * @return the content of the record.
+   */
+  public byte[] bytes(int index) {
+    byte[] bytes = new byte[length(index)];
+    ByteBuffer record = buffer.duplicate();
+    ((Buffer) record).position(offset(index));
+    record.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Opens an input stream over a record that reads directly from the mapped file.
+   *
+   * @param index the index of the record.
+   * @return the input stream.
+   */
+  public InputStream inputStream(int index) {
+    final ByteBuffer record = record(index);
+    return new InputStream() {
+      @Override
+      public int available() {
+        return record.remaining();
+      }
+
+      @Override
+      public int read() {
+        return record.hasRemaining() ? record.get() & 0xFF : -1;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+          return 0;
+        }
+        if (!record.hasRemaining()) {
+          return -1;
+        }
+        int read = Math.min(len, record.remaining());
+        record.get(b, off, read);
+        return read;
+      }
+    };
+  }
+
+  /**
+   * Returns the length of a record.
+   *
+   * @param index the index of the record.
+   * @return the length of the record in bytes.
+   */
+  public int length(int index) {
+    return offset(index + 1) - offset(index);
+  }
+
+  /**
+   * Returns a read-only view of a record over the mapped file.
+   *
+   * @param index the index of the record.
+   * @return the view, positioned at the start of the record.
+   */
+  public ByteBuffer record(int index) {
+    ByteBuffer record = buffer.duplicate();
+    ((Buffer) record).limit(offset(index + 1)).position(offset(index));
+    return record.slice();
+  }
+
+  /**
+   * Returns the number of records.
+   *
+   * @return the number of records.
+   */
+  public int size() {
+    return size;
+  }
+
+  private int offset(int index) {
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Record " + index + " of " + size);
+    }
+    return buffer.getInt(indexPosition + index * 4);
+  }
+}
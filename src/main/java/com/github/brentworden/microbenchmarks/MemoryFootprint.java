@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.brentworden.microbenchmarks.Coders.TestObject;
+import com.github.brentworden.microbenchmarks.Coders.TestObjectCoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the memory retained by the data structures that the benchmarks operate on, so a faster
+ * variant can be weighed against its memory cost. Each structure is measured two ways and reported
+ * in bytes per entry:
+ *
+ * <ul>
+ *   <li>graph: the size of every object reachable from one instance, computed by {@link
+ *       ObjectGraph}. Shared objects, such as cached {@link Integer} values, are included.
+ *   <li>heap: the growth in used heap, after forced garbage collections, from holding many
+ *       instances at once. Shared objects are not included, but the result is subject to the
+ *       precision of the collector's accounting.
+ * </ul>
+ *
+ * <p>Usage: {@code java -cp target/microbenchmarks.jar
+ * com.github.brentworden.microbenchmarks.MemoryFootprint [structure...]} where the structures are
+ * any of {@code hashMap}, {@code jsonNode} and {@code testObjects}; all are measured by default.
+ */
+public final class MemoryFootprint {
+
+  /** A data structure under test. */
+  private abstract static class Structure {
+    final String name;
+
+    Structure(String name) {
+      this.name = name;
+    }
+
+    /** Builds a new instance of the structure. */
+    abstract Object build() throws IOException;
+
+    /** Counts the entries of an instance of the structure. */
+    abstract int entries(Object instance);
+  }
+
+  private static final int HEAP_ENTRIES = 200000;
+
+  private static final int TEST_OBJECT_COUNT = 1000;
+
+  static volatile Object sink;
+
+  private static final List<Structure> STRUCTURES =
+      Arrays.asList(
+          new Structure("hashMap") {
+            @Override
+            Object build() {
+              HashMapAccess.StateHashMap state = new HashMapAccess.StateHashMap();
+              state.onSetup();
+              return state.map;
+            }
+
+            @Override
+            int entries(Object instance) {
+              return ((Map<?, ?>) instance).size();
+            }
+          },
+          new Structure("jsonNode") {
+            final ObjectMapper objectMapper = new ObjectMapper();
+
+            @Override
+            Object build() throws IOException {
+              return objectMapper.readTree(JsonPayloads.loadCorpus(JsonPayloads.CORPUS_MEDIUM));
+            }
+
+            @Override
+            int entries(Object instance) {
+              return countNodes((JsonNode) instance);
+            }
+          },
+          new Structure("testObjects") {
+            final byte[][] encoded = encodeTestObjects();
+
+            @Override
+            Object build() throws IOException {
+              TestObjectCoder coder = TestObjectCoder.of();
+              List<TestObject> testObjects = new ArrayList<>(encoded.length);
+              for (byte[] bytes : encoded) {
+                testObjects.add(coder.decode(new ByteArrayInputStream(bytes)));
+              }
+              return testObjects;
+            }
+
+            @Override
+            int entries(Object instance) {
+              return ((List<?>) instance).size();
+            }
+          });
+
+  private static int countNodes(JsonNode node) {
+    int count = 1;
+    for (JsonNode child : node) {
+      count += countNodes(child);
+    }
+    return count;
+  }
+
+  private static byte[][] encodeTestObjects() {
+    Workload workload = Workload.create();
+    TestObjectCoder coder = TestObjectCoder.of();
+    byte[][] encoded = new byte[TEST_OBJECT_COUNT][];
+    for (int i = 0; i < TEST_OBJECT_COUNT; ++i) {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream(100);
+      try {
+        coder.encode(workload.nextTestObject(), bos);
+      } catch (IOException ex) {
+        throw new IllegalStateException(ex);
+      }
+      encoded[i] = bos.toByteArray();
+    }
+    return encoded;
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < 5; ++i) {
+      System.gc();
+      Thread.sleep(50);
+      used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+    }
+    return used;
+  }
+
+  /**
+   * Measures the structures and prints the bytes retained per entry.
+   *
+   * @param args the names of the structures to measure; all when empty.
+   * @throws Exception if a structure cannot be built.
+   */
+  public static void main(String[] args) throws Exception {
+    List<String> names = Arrays.asList(args);
+    System.out.printf(
+        "%-14s %10s %18s %18s%n", "Structure", "Entries", "Graph (B/entry)", "Heap (B/entry)");
+    for (Structure structure : STRUCTURES) {
+      if (!names.isEmpty() && !names.contains(structure.name)) {
+        continue;
+      }
+
+      Object instance = structure.build();
+      int entries = structure.entries(instance);
+      double graphBytes = (double) ObjectGraph.sizeOf(instance) / entries;
+
+      int copies = Math.max(1, HEAP_ENTRIES / entries);
+      Object[] retained = new Object[copies];
+      long before = usedHeap();
+      for (int i = 0; i < copies; ++i) {
+        retained[i] = structure.build();
+      }
+      long after = usedHeap();
+      double heapBytes = (double) (after - before) / ((long) copies * entries);
+      sink = retained;
+
+      System.out.printf(
+          "%-14s %10d %18.1f %18.1f%n", structure.name, entries, graphBytes, heapBytes);
+    }
+  }
+
+  private MemoryFootprint() {}
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Matches values against a rule set of include and exclude regular expressions. A value matches
+ * the rule set when it matches at least one include rule and none of the exclude rules.
+ *
+ * <p>Several strategies are provided. {@link #sequential} runs each rule's {@link Pattern} one by
+ * one and is the baseline. {@link #alternation} combines the include rules and the exclude rules
+ * into one alternation {@link Pattern} each. {@link #prefixIndexed} indexes the rules by the
+ * characters a match can start with, so only the rules that can match a value's first character
+ * are run, and runs them as {@link SimpleRegex} instances.
+ */
+public abstract class MultiPatternMatcher {
+
+  /** Matches using one combined alternation pattern for each of the include and exclude rules. */
+  private static class AlternationMatcher extends MultiPatternMatcher {
+    private final Pattern exclude;
+
+    private final Pattern include;
+
+    AlternationMatcher(List<String> includes, List<String> excludes) {
+      this.exclude = combine(excludes);
+      this.include = combine(includes);
+    }
+
+    @Override
+    public boolean matches(CharSequence value) {
+      return include != null
+          && include.matcher(value).matches()
+          && (exclude == null || !exclude.matcher(value).matches());
+    }
+
+    private static Pattern combine(List<String> regexes) {
+      if (regexes.isEmpty()) {
+        return null;
+      }
+      StringBuilder b = new StringBuilder();
+      for (String regex : regexes) {
+        if (b.length() > 0) {
+          b.append('|');
+        }
+        b.append("(?:").append(regex).append(')');
+      }
+      return Pattern.compile(b.toString());
+    }
+  }
+
+  /** Matches using only the rules that can match the first character of a value. */
+  private static class PrefixIndexedMatcher extends MultiPatternMatcher {
+    private final SimpleRegex[] allExcludes;
+
+    private final SimpleRegex[] allIncludes;
+
+    private final SimpleRegex[][] excludesByFirstCharacter;
+
+    private final SimpleRegex[][] includesByFirstCharacter;
+
+    PrefixIndexedMatcher(List<String> includes, List<String> excludes) {
+      this.allExcludes = compile(excludes);
+      this.allIncludes = compile(includes);
+      this.excludesByFirstCharacter = index(allExcludes);
+      this.includesByFirstCharacter = index(allIncludes);
+    }
+
+    @Override
+    public boolean matches(CharSequence value) {
+      SimpleRegex[] includes;
+      SimpleRegex[] excludes;
+      if (value.length() > 0 && value.charAt(0) < INDEX_SIZE) {
+        includes = includesByFirstCharacter[value.charAt(0)];
+        excludes = excludesByFirstCharacter[value.charAt(0)];
+      } else {
+        includes = allIncludes;
+        excludes = allExcludes;
+      }
+      return matchesAny(includes, value) && !matchesAny(excludes, value);
+    }
+
+    private static SimpleRegex[] compile(List<String> regexes) {
+      SimpleRegex[] compiled = new SimpleRegex[regexes.size()];
+      for (int i = 0; i < compiled.length; ++i) {
+        compiled[i] = SimpleRegex.compile(regexes.get(i));
+      }
+      return compiled;
+    }
+
+    private static SimpleRegex[][] index(SimpleRegex[] rules) {
+      SimpleRegex[][] index = new SimpleRegex[INDEX_SIZE][];
+      List<SimpleRegex> candidates = new ArrayList<>();
+      for (char c = 0; c < INDEX_SIZE; ++c) {
+        candidates.clear();
+        for (SimpleRegex rule : rules) {
+          if (rule.mayStartWith(c)) {
+            candidates.add(rule);
+          }
+        }
+        index[c] = candidates.toArray(new SimpleRegex[0]);
+      }
+      return index;
+    }
+
+    private static boolean matchesAny(SimpleRegex[] rules, CharSequence value) {
+      for (SimpleRegex rule : rules) {
+        if (rule.matches(value)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /** Matches by running each rule's pattern one by one. */
+  private static class SequentialMatcher extends MultiPatternMatcher {
+    private final Pattern[] excludes;
+
+    private final Pattern[] includes;
+
+    SequentialMatcher(List<String> includes, List<String> excludes) {
+      this.excludes = compile(excludes);
+      this.includes = compile(includes);
+    }
+
+    @Override
+    public boolean matches(CharSequence value) {
+      return matchesAny(includes, value) && !matchesAny(excludes, value);
+    }
+
+    private static Pattern[] compile(List<String> regexes) {
+      Pattern[] compiled = new Pattern[regexes.size()];
+      for (int i = 0; i < compiled.length; ++i) {
+        compiled[i] = Pattern.compile(regexes.get(i));
+      }
+      return compiled;
+    }
+
+    private static boolean matchesAny(Pattern[] rules, CharSequence value) {
+      for (Pattern rule : rules) {
+        if (rule.matcher(value).matches()) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final int INDEX_SIZE = 256;
+
+  /**
+   * Creates a matcher that combines the rules into one alternation pattern for the include rules
+   * and one for the exclude rules. Rules that use back references cannot be combined this way.
+   *
+   * @param includes the include regular expressions.
+   * @param excludes the exclude regular expressions.
+   * @return the matcher.
+   */
+  public static MultiPatternMatcher alternation(List<String> includes, List<String> excludes) {
+    return new AlternationMatcher(includes, excludes);
+  }
+
+  /**
+   * Creates a matcher that indexes the rules by the characters a match can start with and only
+   * runs the rules that can match the first character of a value.
+   *
+   * @param includes the include regular expressions.
+   * @param excludes the exclude regular expressions.
+   * @return the matcher.
+   */
+  public static MultiPatternMatcher prefixIndexed(List<String> includes, List<String> excludes) {
+    return new PrefixIndexedMatcher(includes, excludes);
+  }
+
+  /**
+   * Creates a matcher that runs each rule one by one.
+   *
+   * @param includes the include regular expressions.
+   * @param excludes the exclude regular expressions.
+   * @return the matcher.
+   */
+  public static MultiPatternMatcher sequential(List<String> includes, List<String> excludes) {
+    return new SequentialMatcher(includes, excludes);
+  }
+
+  /**
+   * Tells whether a value matches at least one include rule and none of the exclude rules.
+   *
+   * @param value the value to be matched.
+   * @return {@code true} if the value matches the rule set.
+   */
+  public abstract boolean matches(CharSequence value);
+}
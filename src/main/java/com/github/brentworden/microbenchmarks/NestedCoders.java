@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import com.github.brentworden.microbenchmarks.Coders.TestObject;
+import com.github.brentworden.microbenchmarks.Coders.TestObjectCoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.beam.sdk.coders.AvroCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.IterableCoder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.LengthPrefixCoder;
+import org.apache.beam.sdk.coders.SerializableCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.util.CoderUtils;
+import org.apache.beam.sdk.values.KV;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Collection of benchmarks that measure the throughput of the {@link Coder} implementations from
+ * {@link Coders} the way a pipeline runner uses them: nested inside a {@link KvCoder}, {@link
+ * IterableCoder} or {@link LengthPrefixCoder}, through the {@link CoderUtils} copy helpers, and
+ * when comparing elements by structural value.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 20, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(10)
+public class NestedCoders {
+
+  /**
+   * State used by the benchmarks to hold onto {@link Coder} instances so their construction is not
+   * considered part of the test.
+   */
+  @State(Scope.Benchmark)
+  public static class StateCoders {
+    Coder<TestObject> coder;
+
+    @Param({"avro", "custom", "serializable"})
+    String coderName;
+
+    Coder<Iterable<TestObject>> iterableCoder;
+
+    Coder<KV<String, TestObject>> kvCoder;
+
+    Coder<TestObject> lengthPrefixCoder;
+
+    @Setup(Level.Trial)
+    public void onTrialSetup() {
+      switch (coderName) {
+        case "avro":
+          coder = AvroCoder.of(TestObject.class);
+          break;
+        case "custom":
+          coder = TestObjectCoder.of();
+          break;
+        case "serializable":
+          coder = SerializableCoder.of(TestObject.class);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown coder: " + coderName);
+      }
+      iterableCoder = IterableCoder.of(coder);
+      kvCoder = KvCoder.of(StringUtf8Coder.of(), coder);
+      lengthPrefixCoder = LengthPrefixCoder.of(coder);
+    }
+  }
+
+  /**
+   * State used by the benchmarks that encode to report the size of the encoded value. The
+   * benchmarks that copy or compare do not use it, so they do not report a size.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class StateEncodedSize {
+    public int bytes;
+  }
+
+  /**
+   * State used by the benchmarks to hold onto {@link TestObject} instances, and an equal copy of
+   * each, so their construction is not considered part of the test.
+   */
+  @State(Scope.Thread)
+  public static class StateTestObjects {
+    TestObject copiedTestObject;
+
+    KV<String, TestObject> keyedTestObject;
+
+    TestObject originalTestObject;
+
+    List<TestObject> testObjects;
+
+    Workload workload;
+
+    @Setup(Level.Iteration)
+    public void onIterationSetup() throws IOException {
+      originalTestObject = workload.nextTestObject();
+      copiedTestObject = CoderUtils.clone(TestObjectCoder.of(), originalTestObject);
+      keyedTestObject = KV.of(workload.nextString(5, 19), originalTestObject);
+      testObjects = Collections.nCopies(ITERABLE_SIZE, originalTestObject);
+    }
+
+    @Setup(Level.Trial)
+    public void onTrialSetup(ThreadParams threadParams) {
+      workload = Workload.forThread(threadParams.getThreadIndex());
+    }
+  }
+
+  private static final int ITERABLE_SIZE = 10;
+
+  private static <T> T roundTrip(Coder<T> coder, T value, StateEncodedSize size)
+      throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(1000);
+    coder.encode(value, bos);
+
+    byte[] buffer = bos.toByteArray();
+
+    ByteArrayInputStream bis = new ByteArrayInputStream(buffer);
+    T newValue = coder.decode(bis);
+
+    size.bytes = buffer.length;
+
+    return newValue;
+  }
+
+  /** Benchmark that measures the throughput of copying a test object with {@link CoderUtils}. */
+  @Benchmark
+  public TestObject cloneUsingCoderUtils(StateCoders coders, StateTestObjects testObject)
+      throws IOException {
+    return CoderUtils.clone(coders.coder, testObject.originalTestObject);
+  }
+
+  /**
+   * Benchmark that measures the throughput of comparing a test object with an equal copy the way
+   * a runner does; with {@link Object#equals(Object)} when the coder is consistent with equals and
+   * otherwise by structural value.
+   *
+   * <p>{@link SerializableCoder} uses the value itself as its structural value and {@link
+   * TestObject} does not override {@link Object#equals(Object)}, so for the {@code serializable}
+   * coder this measures an identity comparison that returns {@code false}, not a structural one.
+   */
+  @Benchmark
+  public boolean compareUsingStructuralValue(StateCoders coders, StateTestObjects testObject) {
+    if (coders.coder.consistentWithEquals()) {
+      return testObject.originalTestObject.equals(testObject.copiedTestObject);
+    }
+    return coders
+        .coder
+        .structuralValue(testObject.originalTestObject)
+        .equals(coders.coder.structuralValue(testObject.copiedTestObject));
+  }
+
+  /**
+   * Benchmark that measures the throughput of encoding a test object to a byte array with {@link
+   * CoderUtils}.
+   */
+  @Benchmark
+  public byte[] encodeToByteArrayUsingCoderUtils(
+      StateCoders coders, StateTestObjects testObject, StateEncodedSize size) throws IOException {
+    byte[] bytes = CoderUtils.encodeToByteArray(coders.coder, testObject.originalTestObject);
+    size.bytes = bytes.length;
+    return bytes;
+  }
+
+  /**
+   * Benchmark that measures the throughput of encoding and decoding a list of test objects using an
+   * {@link IterableCoder}.
+   */
+  @Benchmark
+  public Iterable<TestObject> iterableCoder(
+      StateCoders coders, StateTestObjects testObject, StateEncodedSize size) throws IOException {
+    return roundTrip(coders.iterableCoder, testObject.testObjects, size);
+  }
+
+  /**
+   * Benchmark that measures the throughput of encoding and decoding a keyed test object using a
+   * {@link KvCoder} with a string key.
+   */
+  @Benchmark
+  public KV<String, TestObject> kvCoder(
+      StateCoders coders, StateTestObjects testObject, StateEncodedSize size) throws IOException {
+    return roundTrip(coders.kvCoder, testObject.keyedTestObject, size);
+  }
+
+  /**
+   * Benchmark that measures the throughput of encoding and decoding a test object using a {@link
+   * LengthPrefixCoder}.
+   */
+  @Benchmark
+  public TestObject lengthPrefixCoder(
+      StateCoders coders, StateTestObjects testObject, StateEncodedSize size) throws IOException {
+    return roundTrip(coders.lengthPrefixCoder, testObject.originalTestObject, size);
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the size of the objects reachable from a root by walking the object graph. Instance
+ * sizes come from the field offsets the JVM reports, rounded up to the 8 byte object alignment, so
+ * they reflect the running JVM's layout, e.g. whether compressed references are used, without an
+ * instrumentation agent. Static fields and {@link Class} objects are not followed.
+ *
+ * <p>Every reachable object is counted, including objects that are shared with the rest of the
+ * heap, such as cached boxed values and constants, so the result is an upper bound of the memory
+ * the root retains.
+ *
+ * <p>The field offsets come from {@code sun.misc.Unsafe}, which is looked up reflectively and
+ * called through method handles so the class compiles without internal API warnings.
+ */
+public final class ObjectGraph {
+
+  /** The size of an instance of a class and the offsets of its reference fields. */
+  private static class Layout {
+    final long[] referenceOffsets;
+
+    final long size;
+
+    Layout(long size, long[] referenceOffsets) {
+      this.size = size;
+      this.referenceOffsets = referenceOffsets;
+    }
+  }
+
+  /** A class with a single field, which is laid out directly after the object header. */
+  private static class Probe {
+    @SuppressWarnings("unused")
+    int value;
+  }
+
+  private static final int ALIGNMENT = 8;
+
+  private static final MethodHandle ARRAY_BASE_OFFSET;
+
+  private static final MethodHandle ARRAY_INDEX_SCALE;
+
+  private static final MethodHandle GET_OBJECT;
+
+  private static final long HEADER_SIZE;
+
+  private static final MethodHandle OBJECT_FIELD_OFFSET;
+
+  private static final int REFERENCE_SIZE;
+
+  static {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      Object unsafe = theUnsafe.get(null);
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      ARRAY_BASE_OFFSET =
+          lookup.unreflect(unsafeClass.getMethod("arrayBaseOffset", Class.class)).bindTo(unsafe);
+      ARRAY_INDEX_SCALE =
+          lookup.unreflect(unsafeClass.getMethod("arrayIndexScale", Class.class)).bindTo(unsafe);
+      GET_OBJECT =
+          lookup
+              .unreflect(unsafeClass.getMethod("getObject", Object.class, long.class))
+              .bindTo(unsafe);
+      OBJECT_FIELD_OFFSET =
+          lookup.unreflect(unsafeClass.getMethod("objectFieldOffset", Field.class)).bindTo(unsafe);
+      HEADER_SIZE = objectFieldOffset(Probe.class.getDeclaredField("value"));
+      REFERENCE_SIZE = arrayIndexScale(Object[].class);
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  private static long align(long size) {
+    return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+  }
+
+  private static int arrayBaseOffset(Class<?> type) {
+    try {
+      return (int) ARRAY_BASE_OFFSET.invokeExact(type);
+    } catch (RuntimeException | Error ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static int arrayIndexScale(Class<?> type) {
+    try {
+      return (int) ARRAY_INDEX_SCALE.invokeExact(type);
+    } catch (RuntimeException | Error ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static Object getObject(Object object, long offset) {
+    try {
+      return (Object) GET_OBJECT.invokeExact(object, offset);
+    } catch (RuntimeException | Error ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static long objectFieldOffset(Field field) {
+    try {
+      return (long) OBJECT_FIELD_OFFSET.invokeExact(field);
+    } catch (RuntimeException | Error ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static long fieldSize(Class<?> type) {
+    if (type == long.class || type == double.class) {
+      return 8;
+    } else if (type == int.class || type == float.class) {
+      return 4;
+    } else if (type == short.class || type == char.class) {
+      return 2;
+    } else if (type == byte.class || type == boolean.class) {
+      return 1;
+    }
+    return REFERENCE_SIZE;
+  }
+
+  /**
+   * Computes the total size of the objects reachable from a root.
+   *
+   * @param root the root of the object graph.
+   * @return the size in bytes.
+   */
+  public static long sizeOf(Object root) {
+    return new ObjectGraph().walk(root);
+  }
+
+  private final Map<Class<?>, Layout> layouts = new HashMap<>();
+
+  private ObjectGraph() {}
+
+  private Layout layout(Class<?> type) {
+    Layout layout = layouts.get(type);
+    if (layout == null) {
+      long end = HEADER_SIZE;
+      List<Long> referenceOffsets = new ArrayList<>();
+      try {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+          for (Field field : c.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+              continue;
+            }
+            long offset = objectFieldOffset(field);
+            end = Math.max(end, offset + fieldSize(field.getType()));
+            if (!field.getType().isPrimitive()) {
+              referenceOffsets.add(offset);
+            }
+          }
+        }
+      } catch (UnsupportedOperationException ex) {
+        // hidden classes, such as lambdas, do not expose their field offsets
+        referenceOffsets.clear();
+      }
+      long[] offsets = new long[referenceOffsets.size()];
+      for (int i = 0; i < offsets.length; ++i) {
+        offsets[i] = referenceOffsets.get(i);
+      }
+      layout = new Layout(align(end), offsets);
+      layouts.put(type, layout);
+    }
+    return layout;
+  }
+
+  private long walk(Object root) {
+    Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    Deque<Object> pending = new ArrayDeque<>();
+    pending.push(root);
+    long size = 0;
+    while (!pending.isEmpty()) {
+      Object object = pending.pop();
+      if (object instanceof Class || !visited.add(object)) {
+        continue;
+      }
+
+      Class<?> type = object.getClass();
+      if (type.isArray()) {
+        int length = Array.getLength(object);
+        size += align(arrayBaseOffset(type) + (long) arrayIndexScale(type) * length);
+        if (!type.getComponentType().isPrimitive()) {
+          for (Object element : (Object[]) object) {
+            if (element != null) {
+              pending.push(element);
+            }
+          }
+        }
+      } else {
+        Layout layout = layout(type);
+        size += layout.size;
+        for (long offset : layout.referenceOffsets) {
+          Object referenced = getObject(object, offset);
+          if (referenced != null) {
+            pending.push(referenced);
+          }
+        }
+      }
+    }
+    return size;
+  }
+}
@@ -33,21 +33,34 @@ package com.github.brentworden.microbenchmarks;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.brentworden.microbenchmarks.JsonDeserialization.TestRecord;
 
+import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 
 /**
  * Collection of benchmarks that measure the throughput of using a singleton ObjectMapper and a
  * prototype ObjectMapper.
+ *
+ * <p>The round trip benchmarks serialize and deserialize a POJO with every available hardware
+ * thread to expose contention on state shared through a single {@link ObjectMapper}, such as its
+ * serializer and deserializer caches. Use {@code -t} to measure other thread counts.
  */
 @BenchmarkMode(Mode.Throughput)
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
@@ -56,8 +69,53 @@ import org.openjdk.jmh.annotations.Warmup;
 @Fork(10)
 public class ObjectMapperSingleton {
 
+  /**
+   * State used by the round trip benchmarks to hold onto the test object so its construction is not
+   * considered part of the test.
+   */
+  @State(Scope.Benchmark)
+  public static class StateRecord {
+    TestRecord record;
+
+    final Workload workload = Workload.create();
+
+    @Setup(Level.Iteration)
+    public void onIterationSetup() {
+      record = new TestRecord();
+      record.setCategory(workload.nextString(5, 19));
+      record.setId(workload.nextString(5, 19));
+      record.setName(workload.nextString(5, 19));
+      record.setStatus(workload.nextString(5, 19));
+      int size = workload.nextInt(6, 45);
+      for (int i = 0; i < size; ++i) {
+        record.setOther(workload.nextString(5, 9), workload.nextString(5, 19));
+      }
+    }
+  }
+
+  /**
+   * State used by the round trip benchmarks to give each thread its own {@link ObjectMapper}
+   * instances so their construction is not considered part of the test.
+   */
+  @State(Scope.Thread)
+  public static class StateThreadObjectMappers {
+    ObjectMapper copy;
+
+    ObjectMapper prototype;
+
+    @Setup(Level.Trial)
+    public void onTrialSetup() {
+      copy = getSingletonObjectMapper().copy();
+      prototype = getPrototypeObjectMapper();
+    }
+  }
+
   private static ObjectMapper SINGLETON = getPrototypeObjectMapper();
 
+  private static final ObjectReader SINGLETON_READER = SINGLETON.readerFor(TestRecord.class);
+
+  private static final ObjectWriter SINGLETON_WRITER = SINGLETON.writerFor(TestRecord.class);
+
   public static ObjectMapper getPrototypeObjectMapper() {
     ObjectMapper objectMapper = new ObjectMapper();
 
@@ -91,4 +149,52 @@ public class ObjectMapperSingleton {
   public ObjectMapper singletonObjectMapper() {
     return getSingletonObjectMapper();
   }
+
+  /**
+   * Benchmark that measures the throughput of serializing and deserializing an object using an
+   * {@link ObjectReader} and an {@link ObjectWriter} created once from the singleton and shared by
+   * all threads.
+   */
+  @Benchmark
+  @Threads(Threads.MAX)
+  public TestRecord roundTripUsingCachedReaderAndWriter(StateRecord state) throws IOException {
+    byte[] bytes = SINGLETON_WRITER.writeValueAsBytes(state.record);
+    return SINGLETON_READER.readValue(bytes);
+  }
+
+  /**
+   * Benchmark that measures the throughput of serializing and deserializing an object using the
+   * singleton {@link ObjectMapper} shared by all threads.
+   */
+  @Benchmark
+  @Threads(Threads.MAX)
+  public TestRecord roundTripUsingSingletonObjectMapper(StateRecord state) throws IOException {
+    ObjectMapper objectMapper = getSingletonObjectMapper();
+    byte[] bytes = objectMapper.writeValueAsBytes(state.record);
+    return objectMapper.readValue(bytes, TestRecord.class);
+  }
+
+  /**
+   * Benchmark that measures the throughput of serializing and deserializing an object using a
+   * per-thread {@link ObjectMapper} created with {@link ObjectMapper#copy()} from the singleton.
+   */
+  @Benchmark
+  @Threads(Threads.MAX)
+  public TestRecord roundTripUsingThreadObjectMapperCopy(
+      StateRecord state, StateThreadObjectMappers mappers) throws IOException {
+    byte[] bytes = mappers.copy.writeValueAsBytes(state.record);
+    return mappers.copy.readValue(bytes, TestRecord.class);
+  }
+
+  /**
+   * Benchmark that measures the throughput of serializing and deserializing an object using a
+   * per-thread {@link ObjectMapper} created through construction.
+   */
+  @Benchmark
+  @Threads(Threads.MAX)
+  public TestRecord roundTripUsingThreadObjectMapperPrototype(
+      StateRecord state, StateThreadObjectMappers mappers) throws IOException {
+    byte[] bytes = mappers.prototype.writeValueAsBytes(state.record);
+    return mappers.prototype.readValue(bytes, TestRecord.class);
+  }
 }
@@ -36,10 +36,12 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 import org.openjdk.jmh.annotations.Benchmark;
@@ -49,6 +51,7 @@ import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -57,6 +60,10 @@ import org.openjdk.jmh.annotations.Warmup;
 /**
  * Collection of benchmarks that measure the throughput of writing JSON to a byte array using an
  * ObjectMapper.
+ *
+ * <p>The buffer benchmarks write into reused output buffers instead of returning a new byte array.
+ * Their benefit is mostly in allocation rate, so run them with {@code -prof gc}, and with {@code -t
+ * 1} through {@code -t max} to see how the pooled approaches scale with thread count.
  */
 @BenchmarkMode(Mode.Throughput)
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
@@ -68,6 +75,9 @@ public class ObjectMapperWriteObjectAsBytes {
   /**
    * State used by the benchmarks to hold onto an {@link ObjectMapper} and a test object so their
    * construction is not considered part of the test.
+   *
+   * <p>By default the test object is a random flat string dictionary. Set the {@code payload}
+   * parameter to the name of a {@link JsonPayloads} corpus document to write it instead.
    */
   @State(Scope.Benchmark)
   public static class StateJson {
@@ -83,34 +93,116 @@ public class ObjectMapperWriteObjectAsBytes {
       objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
     }
 
-    Map<String, String> rawObject;
+    @Param({JsonPayloads.FLAT})
+    String payload;
+
+    Object rawObject;
 
-    final Random rng = new Random();
+    final Workload workload = Workload.create();
 
     @Setup(Level.Iteration)
-    public void onIterationSetup() throws JsonProcessingException {
-      Map<String, String> dictionary = new LinkedHashMap<>();
-      int size = rng.nextInt(40) + 10;
-      for (int i = 0; i < size; ++i) {
-        int keySize = rng.nextInt(5) + 5;
-        String key = randomString(keySize);
-        int valueSize = rng.nextInt(15) + 5;
-        String value = randomString(valueSize);
-        dictionary.put(key, value);
+    public void onIterationSetup() throws IOException {
+      if (JsonPayloads.FLAT.equals(payload)) {
+        rawObject = workload.nextDictionary();
+      } else {
+        rawObject = objectMapper.readValue(JsonPayloads.loadCorpus(payload), Object.class);
       }
+    }
+  }
+
+  /**
+   * State used by the buffer benchmarks to hold onto reusable output buffers so their construction
+   * is not considered part of the test. Each thread gets its own buffers.
+   */
+  @State(Scope.Thread)
+  public static class StateBuffers {
+    ByteBufferOutputStream directByteBuffer;
+
+    RecyclableByteArrayOutputStream recycledByteArray;
 
-      rawObject = dictionary;
+    @Setup(Level.Trial)
+    public void onTrialSetup() {
+      directByteBuffer = new ByteBufferOutputStream(ByteBuffer.allocateDirect(INITIAL_CAPACITY));
+      recycledByteArray = new RecyclableByteArrayOutputStream(INITIAL_CAPACITY);
     }
+  }
+
+  /**
+   * An {@link OutputStream} that writes to a {@link ByteBuffer}. When the buffer runs out of space,
+   * it is replaced with a larger buffer of the same kind (direct or heap) so subsequent writes
+   * reuse the larger capacity.
+   */
+  public static class ByteBufferOutputStream extends OutputStream {
+    // The buffer is cast to Buffer for clear and flip so a class file built by a later JDK links
+    // to the methods Java 8 has, not the ByteBuffer overrides added in Java 9.
+    private ByteBuffer buffer;
 
-    private String randomString(int length) {
-      char[] c = new char[length];
-      for (int i = 0; i < length; ++i) {
-        c[i] = (char) ('a' + rng.nextInt('z' - 'a'));
+    public ByteBufferOutputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    /**
+     * Returns the written content as a read-only view of the underlying buffer, positioned at zero
+     * and limited to the number of bytes written.
+     */
+    public ByteBuffer getByteBuffer() {
+      ByteBuffer view = buffer.duplicate();
+      ((Buffer) view).flip();
+      return view.asReadOnlyBuffer();
+    }
+
+    /** Discards the written content so the buffer can be written again. */
+    public void reset() {
+      ((Buffer) buffer).clear();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      ensureRemaining(len);
+      buffer.put(b, off, len);
+    }
+
+    @Override
+    public void write(int b) {
+      ensureRemaining(1);
+      buffer.put((byte) b);
+    }
+
+    private void ensureRemaining(int length) {
+      if (buffer.remaining() < length) {
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + length);
+        ByteBuffer larger =
+            buffer.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        ((Buffer) buffer).flip();
+        larger.put(buffer);
+        buffer = larger;
       }
-      return new String(c);
     }
   }
 
+  /**
+   * A {@link ByteArrayOutputStream} whose internal buffer can be viewed without the copy made by
+   * {@link ByteArrayOutputStream#toByteArray()}.
+   */
+  public static class RecyclableByteArrayOutputStream extends ByteArrayOutputStream {
+    public RecyclableByteArrayOutputStream(int size) {
+      super(size);
+    }
+
+    /**
+     * Returns the written content as a read-only view of the internal buffer. The view is only
+     * valid until the next call to {@link #reset()}.
+     */
+    public ByteBuffer getByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count).asReadOnlyBuffer();
+    }
+  }
+
+  private static final int INITIAL_CAPACITY = 4096;
+
+  private static final ThreadLocal<RecyclableByteArrayOutputStream> THREAD_LOCAL_BUFFER =
+      ThreadLocal.withInitial(() -> new RecyclableByteArrayOutputStream(INITIAL_CAPACITY));
+
   /** Benchmark that measures the throughput of writing an object directly to a byte array. */
   @Benchmark
   public byte[] writeBytes(StateJson state) throws JsonProcessingException {
@@ -126,4 +218,42 @@ public class ObjectMapperWriteObjectAsBytes {
     String jsonString = StateJson.objectMapper.writeValueAsString(state.rawObject);
     return jsonString.getBytes(StandardCharsets.UTF_8);
   }
+
+  /**
+   * Benchmark that measures the throughput of writing an object to a direct {@link ByteBuffer},
+   * owned by the benchmark thread, through an {@link OutputStream} wrapper.
+   */
+  @Benchmark
+  public ByteBuffer writeToDirectByteBuffer(StateJson state, StateBuffers buffers)
+      throws IOException {
+    ByteBufferOutputStream out = buffers.directByteBuffer;
+    out.reset();
+    StateJson.objectMapper.writeValue(out, state.rawObject);
+    return out.getByteBuffer();
+  }
+
+  /**
+   * Benchmark that measures the throughput of writing an object to a recycled {@link
+   * ByteArrayOutputStream}, owned by the benchmark thread, without copying the result.
+   */
+  @Benchmark
+  public ByteBuffer writeToRecycledByteArrayOutputStream(StateJson state, StateBuffers buffers)
+      throws IOException {
+    RecyclableByteArrayOutputStream out = buffers.recycledByteArray;
+    out.reset();
+    StateJson.objectMapper.writeValue(out, state.rawObject);
+    return out.getByteBuffer();
+  }
+
+  /**
+   * Benchmark that measures the throughput of writing an object to a recycled {@link
+   * ByteArrayOutputStream} obtained from a {@link ThreadLocal} pool, without copying the result.
+   */
+  @Benchmark
+  public ByteBuffer writeToThreadLocalBuffer(StateJson state) throws IOException {
+    RecyclableByteArrayOutputStream out = THREAD_LOCAL_BUFFER.get();
+    out.reset();
+    StateJson.objectMapper.writeValue(out, state.rawObject);
+    return out.getByteBuffer();
+  }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * A concurrent, bounded cache of compiled {@link Pattern} instances keyed by regular expression.
+ * Lookups are lock free. When the cache grows beyond its maximum size, entries are evicted using
+ * the CLOCK (second chance) policy; an entry that has been used since it was last examined is kept
+ * and the next oldest entry is considered instead.
+ *
+ * <p>This is meant for call sites that match against dynamic regular expressions, like {@link
+ * String#matches(String)}, and cannot hold onto a {@link Pattern} themselves.
+ */
+public class PatternCache {
+
+  /** A cached pattern along with its CLOCK reference bit. */
+  private static class Entry {
+    final Pattern pattern;
+
+    volatile boolean referenced;
+
+    Entry(Pattern pattern) {
+      this.pattern = pattern;
+    }
+  }
+
+  private final Queue<String> clock = new ConcurrentLinkedQueue<>();
+
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private final int maximumSize;
+
+  /**
+   * Creates a cache that holds onto at most {@code maximumSize} patterns.
+   *
+   * @param maximumSize the maximum number of cached patterns.
+   */
+  public PatternCache(int maximumSize) {
+    if (maximumSize < 1) {
+      throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+    }
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Returns the compiled pattern for a regular expression, compiling and caching it if needed.
+   *
+   * @param regex the regular expression.
+   * @return the compiled pattern.
+   * @throws java.util.regex.PatternSyntaxException if the regular expression is not valid.
+   */
+  public Pattern compile(String regex) {
+    Entry entry = entries.get(regex);
+    if (entry == null) {
+      Entry created = new Entry(Pattern.compile(regex));
+      entry = entries.putIfAbsent(regex, created);
+      if (entry == null) {
+        entry = created;
+        clock.offer(regex);
+        evict();
+      }
+    } else if (!entry.referenced) {
+      entry.referenced = true;
+    }
+    return entry.pattern;
+  }
+
+  /**
+   * Tells whether a value matches a regular expression, in the same manner as {@link
+   * String#matches(String)} but without recompiling regular expressions already in the cache.
+   *
+   * @param value the value to be matched.
+   * @param regex the regular expression.
+   * @return {@code true} if the entire value matches the regular expression.
+   */
+  public boolean matches(String value, String regex) {
+    return compile(regex).matcher(value).matches();
+  }
+
+  /**
+   * Returns the number of cached patterns.
+   *
+   * @return the number of cached patterns.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  private void evict() {
+    while (entries.size() > maximumSize) {
+      String regex = clock.poll();
+      if (regex == null) {
+        return;
+      }
+      Entry entry = entries.get(regex);
+      if (entry != null && entry.referenced) {
+        entry.referenced = false;
+        clock.offer(regex);
+      } else {
+        entries.remove(regex);
+      }
+    }
+  }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.brentworden.microbenchmarks.Coders.TestObject;
+import com.github.brentworden.microbenchmarks.Coders.TestObjectCoder;
+import com.github.brentworden.microbenchmarks.JsonDeserialization.TestRecord;
+import com.sun.management.OperatingSystemMXBean;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collection of benchmarks that measure the throughput of processing records through four stages;
+ * parsing JSON into a {@link TestRecord}, transforming it into a {@link TestObject}, encoding that
+ * with {@link TestObjectCoder} and compressing the encoding with a {@link Deflater}. The stages are
+ * run per record on one thread, a batch at a time on one thread, and pipelined on one thread per
+ * stage with a {@link StagedPipeline}.
+ *
+ * <p>Besides records per millisecond, the {@code cpuNanos} and {@code cpuRecords} counters report
+ * the process CPU time used by the measurement and the records processed in it; divide them to
+ * compare throughput per core. The CPU time is process wide, so these only hold when the benchmark
+ * runs on one thread, the default; with {@code -t} greater than one every thread counts the CPU
+ * time of all of them. Run with {@code -prof
+ * com.github.brentworden.microbenchmarks.GaugeProfiler} to also report that ratio, and the 50th and
+ * 99th percentile latency of a record, from when its batch starts processing, or is submitted to
+ * the pipeline, until its output is ready, averaged across iterations. {@code batchSize} does not
+ * apply to the per record benchmark.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 20, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(10)
+public class RecordPipeline {
+
+  /** Compresses an encoded record. */
+  static class CompressStage implements StagedPipeline.Stage {
+    byte[] buffer = new byte[1024];
+
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    @Override
+    public Object apply(Object record) {
+      byte[] input = (byte[]) record;
+      deflater.reset();
+      deflater.setInput(input);
+      deflater.finish();
+      int length = 0;
+      while (!deflater.finished()) {
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        length += deflater.deflate(buffer, length, buffer.length - length);
+      }
+      return Arrays.copyOf(buffer, length);
+    }
+  }
+
+  /** Encodes a test object with its coder. */
+  static class EncodeStage implements StagedPipeline.Stage {
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream(1000);
+
+    @Override
+    public Object apply(Object record) throws IOException {
+      bos.reset();
+      TestObjectCoder.of().encode((TestObject) record, bos);
+      return bos.toByteArray();
+    }
+  }
+
+  /** Parses JSON content into a test record. */
+  static class ParseStage implements StagedPipeline.Stage {
+    @Override
+    public Object apply(Object record) throws IOException {
+      return RECORD_READER.readValue((byte[]) record);
+    }
+  }
+
+  /** Transforms a test record into a test object. */
+  static class TransformStage implements StagedPipeline.Stage {
+    @Override
+    public Object apply(Object record) {
+      TestRecord testRecord = (TestRecord) record;
+      TestObject testObject = new TestObject();
+      testObject.setIntValue(testRecord.getId().hashCode());
+      testObject.setNonNullableStringValue(testRecord.getCategory() + '/' + testRecord.getName());
+      if (!"inactive".equals(testRecord.getStatus())) {
+        testObject.setNullableStringValue(testRecord.getStatus());
+      }
+      return testObject;
+    }
+  }
+
+  /**
+   * State used by the benchmarks to report the CPU time used and the latency of records for each
+   * iteration. The counters are per iteration, so JMH sums them into totals for the measurement.
+   * {@code cpuNanos} is the CPU time of the whole process, so it is only meaningful when one
+   * benchmark thread runs.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class StateLatency {
+    public long cpuNanos;
+
+    private long cpuNanosAtStart;
+
+    public long cpuRecords;
+
+    final LatencyHistogram latency = new LatencyHistogram();
+
+    @Setup(Level.Iteration)
+    public void onIterationSetup() {
+      latency.reset();
+      cpuNanosAtStart = processCpuNanos();
+    }
+
+    @TearDown(Level.Iteration)
+    public void onIterationTearDown() {
+      cpuNanos = processCpuNanos() - cpuNanosAtStart;
+      cpuRecords = latency.count();
+      if (cpuNanos > 0) {
+        GaugeProfiler.record(
+            "recordsPerCpuMillisecond", cpuRecords / (cpuNanos / 1e6), "records/ms");
+      }
+      GaugeProfiler.record("latencyP50", latency.percentile(50.0) / 1e3, "us");
+      GaugeProfiler.record("latencyP99", latency.percentile(99.0) / 1e3, "us");
+    }
+
+    void record(long latencyNanos, int records) {
+      for (int i = 0; i < records; ++i) {
+        latency.record(latencyNanos);
+      }
+    }
+  }
+
+  /**
+   * State used by the benchmarks to hold onto the input records, the stages and the pipeline so
+   * their construction is not considered part of the test.
+   */
+  @State(Scope.Thread)
+  public static class StateRecords {
+    @Param({"1", "16", "256"})
+    int batchSize;
+
+    byte[][] inputs;
+
+    StagedPipeline pipeline;
+
+    @Param({"4"})
+    int queueCapacity;
+
+    final StagedPipeline.Stage[] stages = createStages().toArray(new StagedPipeline.Stage[0]);
+
+    @Setup(Level.Trial)
+    public void onTrialSetup() throws IOException {
+      MappedCorpus corpus = MappedCorpus.open("pipeline-records", RecordPipeline::generateRecords);
+      inputs = new byte[corpus.size()][];
+      for (int i = 0; i < inputs.length; ++i) {
+        inputs[i] = corpus.bytes(i);
+      }
+      pipeline = new StagedPipeline(createStages(), queueCapacity);
+    }
+
+    @TearDown(Level.Trial)
+    public void onTrialTearDown() {
+      pipeline.close();
+    }
+
+    Object[] batch(int from) {
+      int to = Math.min(inputs.length, from + batchSize);
+      Object[] records = new Object[to - from];
+      System.arraycopy(inputs, from, records, 0, records.length);
+      return records;
+    }
+  }
+
+  /** State used by the benchmarks to report the number of records that are processed. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class StateRecordCount {
+    public long records;
+  }
+
+  private static final ObjectReader RECORD_READER =
+      new ObjectMapper()
+          .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+          .readerFor(TestRecord.class);
+
+  private static final int RECORD_COUNT = 1024;
+
+  private static List<StagedPipeline.Stage> createStages() {
+    return Arrays.asList(
+        new ParseStage(), new TransformStage(), new EncodeStage(), new CompressStage());
+  }
+
+  private static void generateRecords(Workload workload, MappedCorpus.RecordWriter writer)
+      throws IOException {
+    ObjectMapper objectMapper = new ObjectMapper();
+    for (int i = 0; i < RECORD_COUNT; ++i) {
+      Map<String, String> dictionary = new LinkedHashMap<>();
+      dictionary.put("id", workload.nextString(5, 19));
+      dictionary.put("name", workload.nextString(5, 19));
+      dictionary.put("category", workload.nextString(5, 9));
+      dictionary.put("status", workload.nextInt(4) == 0 ? "inactive" : "active");
+      int size = workload.nextInt(10, 49);
+      while (dictionary.size() < size) {
+        dictionary.put(workload.nextString(5, 9), workload.nextString(5, 19));
+      }
+      writer.write(objectMapper.writeValueAsBytes(dictionary));
+    }
+  }
+
+  private static long processCpuNanos() {
+    return ((OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+        .getProcessCpuTime();
+  }
+
+  /**
+   * Benchmark that measures the throughput of running each stage over a whole batch before the next
+   * stage, on one thread.
+   */
+  @Benchmark
+  public int batchAtATime(StateRecords state, StateLatency latency, StateRecordCount count)
+      throws Exception {
+    int bytes = 0;
+    for (int from = 0; from < state.inputs.length; from += state.batchSize) {
+      long start = System.nanoTime();
+      Object[] records = state.batch(from);
+      for (StagedPipeline.Stage stage : state.stages) {
+        for (int i = 0; i < records.length; ++i) {
+          records[i] = stage.apply(records[i]);
+        }
+      }
+      for (Object record : records) {
+        bytes += ((byte[]) record).length;
+      }
+      latency.record(System.nanoTime() - start, records.length);
+    }
+    count.records += state.inputs.length;
+    return bytes;
+  }
+
+  /**
+   * Benchmark that measures the throughput of running every stage over one record before the next
+   * record, on one thread.
+   */
+  @Benchmark
+  public int perRecord(StateRecords state, StateLatency latency, StateRecordCount count)
+      throws Exception {
+    int bytes = 0;
+    for (byte[] input : state.inputs) {
+      long start = System.nanoTime();
+      Object record = input;
+      for (StagedPipeline.Stage stage : state.stages) {
+        record = stage.apply(record);
+      }
+      bytes += ((byte[]) record).length;
+      latency.record(System.nanoTime() - start, 1);
+    }
+    count.records += state.inputs.length;
+    return bytes;
+  }
+
+  /**
+   * Benchmark that measures the throughput of running the stages on one thread each, passing
+   * batches between them through bounded queues.
+   */
+  @Benchmark
+  public int pipelined(StateRecords state, StateLatency latency, StateRecordCount count)
+      throws InterruptedException {
+    int bytes = 0;
+    int pending = 0;
+    for (int from = 0; from < state.inputs.length; from += state.batchSize) {
+      state.pipeline.submit(state.batch(from));
+      ++pending;
+      StagedPipeline.Batch batch;
+      while ((batch = state.pipeline.poll()) != null) {
+        bytes += complete(batch, latency);
+        --pending;
+      }
+    }
+    for (; pending > 0; --pending) {
+      bytes += complete(state.pipeline.take(), latency);
+    }
+    count.records += state.inputs.length;
+    return bytes;
+  }
+
+  private static int complete(StagedPipeline.Batch batch, StateLatency latency) {
+    latency.record(System.nanoTime() - batch.submittedNanos(), batch.records().length);
+    int bytes = 0;
+    for (Object record : batch.records()) {
+      bytes += ((byte[]) record).length;
+    }
+    return bytes;
+  }
+}
@@ -30,7 +30,6 @@
  */
 package com.github.brentworden.microbenchmarks;
 
-import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
@@ -67,35 +66,34 @@ public class Regex {
 
     String excludeRegex;
 
+    SimpleRegex excludeSimpleRegex;
+
     Pattern includePattern;
 
     String includeRegex;
 
+    SimpleRegex includeSimpleRegex;
+
     String value;
 
+    final Workload workload = Workload.create();
+
     @Setup(Level.Iteration)
     public void onIterationSetup() {
-      value = randomString(6);
+      value = workload.nextString(6);
     }
 
     @Setup(Level.Trial)
     public void onTrialSetup() {
-      includeRegex = "^[" + randomString(4) + "]+$";
+      includeRegex = "^[" + workload.nextString(4) + "]+$";
       includePattern = Pattern.compile(includeRegex);
 
-      excludeRegex = "^[" + randomString(2) + "]+$";
+      excludeRegex = "^[" + workload.nextString(2) + "]+$";
       excludePattern = Pattern.compile(excludeRegex);
-    }
-  }
-
-  private static final Random rng = new Random();
 
-  private static String randomString(int length) {
-    char[] c = new char[length];
-    for (int i = 0; i < length; ++i) {
-      c[i] = (char) ('a' + rng.nextInt('z' - 'a'));
+      includeSimpleRegex = SimpleRegex.compile(includeRegex);
+      excludeSimpleRegex = SimpleRegex.compile(excludeRegex);
     }
-    return new String(c);
   }
 
   /**
@@ -107,6 +105,16 @@ public class Regex {
         && !state.excludePattern.matcher(state.value).matches();
   }
 
+  /**
+   * Benchmark that measures the throughput of regular expression matching using a {@link
+   * SimpleRegex}, which matches the character class patterns with a lookup table.
+   */
+  @Benchmark
+  public boolean matchesUsingSimpleRegex(StatePatterns state) {
+    return state.includeSimpleRegex.matches(state.value)
+        && !state.excludeSimpleRegex.matches(state.value);
+  }
+
   /**
    * Benchmark that measures the throughput of regular expression matching using {@link
    * String#matches(String)}.
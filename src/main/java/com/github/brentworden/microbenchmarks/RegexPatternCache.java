@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collection of benchmarks that measure the throughput of regular expression matching when the
+ * regular expressions are dynamic strings, comparing a bounded {@link PatternCache} with
+ * precompiled {@link Pattern} instances and {@link String#matches(String)}.
+ *
+ * <p>Each thread cycles through the distinct regular expressions in order. When there are no more
+ * distinct regular expressions than the cache holds, every cache lookup is a hit. When there are
+ * more, the cyclic access defeats the eviction policy and most lookups are misses. The benchmarks
+ * run with every available hardware thread; use {@code -t} to measure other thread counts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 20, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(10)
+@Threads(Threads.MAX)
+public class RegexPatternCache {
+
+  /**
+   * State used by the benchmarks to hold onto regex objects so their construction is not considered
+   * part of the test.
+   */
+  @State(Scope.Benchmark)
+  public static class StatePatterns {
+    PatternCache cache;
+
+    @Param({"256"})
+    int cacheSize;
+
+    @Param({"16", "1024"})
+    int distinctRegexes;
+
+    Pattern[] patterns;
+
+    String[] regexes;
+
+    final Workload workload = Workload.create();
+
+    String value;
+
+    @Setup(Level.Iteration)
+    public void onIterationSetup() {
+      value = workload.nextString(6);
+    }
+
+    @Setup(Level.Trial)
+    public void onTrialSetup() {
+      Set<String> unique = new LinkedHashSet<>();
+      while (unique.size() < distinctRegexes) {
+        unique.add("^[" + workload.nextString(4) + "]+$");
+      }
+      regexes = unique.toArray(new String[0]);
+
+      patterns = new Pattern[regexes.length];
+      for (int i = 0; i < regexes.length; ++i) {
+        patterns[i] = Pattern.compile(regexes[i]);
+      }
+
+      cache = new PatternCache(cacheSize);
+    }
+  }
+
+  /** State used by each thread to cycle through the distinct regular expressions. */
+  @State(Scope.Thread)
+  public static class StateCursor {
+    int index;
+
+    int next(int length) {
+      int current = index;
+      index = current + 1 == length ? 0 : current + 1;
+      return current;
+    }
+  }
+
+  /**
+   * Benchmark that measures the throughput of regular expression matching using a {@link Pattern}
+   * compiled ahead of time for each regular expression.
+   */
+  @Benchmark
+  public boolean matchesUsingPattern(StatePatterns state, StateCursor cursor) {
+    return state.patterns[cursor.next(state.patterns.length)].matcher(state.value).matches();
+  }
+
+  /**
+   * Benchmark that measures the throughput of regular expression matching using a {@link
+   * PatternCache}.
+   */
+  @Benchmark
+  public boolean matchesUsingPatternCache(StatePatterns state, StateCursor cursor) {
+    return state.cache.matches(state.value, state.regexes[cursor.next(state.regexes.length)]);
+  }
+
+  /**
+   * Benchmark that measures the throughput of regular expression matching using {@link
+   * String#matches(String)}.
+   */
+  @Benchmark
+  public boolean matchesUsingString(StatePatterns state, StateCursor cursor) {
+    return state.value.matches(state.regexes[cursor.next(state.regexes.length)]);
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collection of benchmarks that measure the throughput of matching values against a rule set of
+ * include and exclude regular expressions using the strategies of {@link MultiPatternMatcher}.
+ *
+ * <p>Include rules start with a two character literal followed by a character class, like {@code
+ * ^ab[cdef]*$}. Exclude rules are character classes, like {@code ^[gh]+$}. Half of the values are
+ * built to match a random include rule and the rest are random.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 20, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(10)
+public class RegexRuleSet {
+
+  /**
+   * State used by the benchmarks to hold onto the matchers so their construction is not considered
+   * part of the test.
+   */
+  @State(Scope.Benchmark)
+  public static class StateRules {
+    MultiPatternMatcher alternation;
+
+    MultiPatternMatcher prefixIndexed;
+
+    final Workload workload = Workload.create();
+
+    @Param({"2", "10", "100", "1000"})
+    int ruleCount;
+
+    MultiPatternMatcher sequential;
+
+    String[] values;
+
+    @Setup(Level.Trial)
+    public void onTrialSetup() {
+      List<String> includes = new ArrayList<>();
+      List<String> includePrefixes = new ArrayList<>();
+      List<String> includeClasses = new ArrayList<>();
+      for (int i = 0; i < (ruleCount + 1) / 2; ++i) {
+        String prefix = workload.nextString(2);
+        String characterClass = workload.nextString(4);
+        includes.add("^" + prefix + "[" + characterClass + "]*$");
+        includePrefixes.add(prefix);
+        includeClasses.add(characterClass);
+      }
+
+      List<String> excludes = new ArrayList<>();
+      for (int i = 0; i < ruleCount / 2; ++i) {
+        excludes.add("^[" + workload.nextString(2) + "]+$");
+      }
+
+      alternation = MultiPatternMatcher.alternation(includes, excludes);
+      prefixIndexed = MultiPatternMatcher.prefixIndexed(includes, excludes);
+      sequential = MultiPatternMatcher.sequential(includes, excludes);
+
+      values = new String[VALUE_COUNT];
+      for (int i = 0; i < values.length; ++i) {
+        if (workload.nextInt(2) == 0) {
+          int rule = workload.nextInt(includes.size());
+          String characterClass = includeClasses.get(rule);
+          char[] c = new char[4];
+          for (int j = 0; j < c.length; ++j) {
+            c[j] = characterClass.charAt(workload.nextInt(characterClass.length()));
+          }
+          values[i] = includePrefixes.get(rule) + new String(c);
+        } else {
+          values[i] = workload.nextString(6);
+        }
+      }
+    }
+  }
+
+  /** State used by each thread to cycle through the values. */
+  @State(Scope.Thread)
+  public static class StateCursor {
+    int index;
+
+    String next(String[] values) {
+      String value = values[index];
+      index = (index + 1) & (VALUE_COUNT - 1);
+      return value;
+    }
+  }
+
+  private static final int VALUE_COUNT = 1024;
+
+  /**
+   * Benchmark that measures the throughput of matching a rule set using one combined alternation
+   * pattern for the include rules and one for the exclude rules.
+   */
+  @Benchmark
+  public boolean matchesUsingAlternation(StateRules state, StateCursor cursor) {
+    return state.alternation.matches(cursor.next(state.values));
+  }
+
+  /**
+   * Benchmark that measures the throughput of matching a rule set using only the rules that can
+   * match the first character of the value.
+   */
+  @Benchmark
+  public boolean matchesUsingPrefixIndex(StateRules state, StateCursor cursor) {
+    return state.prefixIndexed.matches(cursor.next(state.values));
+  }
+
+  /**
+   * Benchmark that measures the throughput of matching a rule set by running each rule one by one.
+   */
+  @Benchmark
+  public boolean matchesUsingSequentialPatterns(StateRules state, StateCursor cursor) {
+    return state.sequential.matches(cursor.next(state.values));
+  }
+}
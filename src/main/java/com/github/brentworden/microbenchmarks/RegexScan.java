@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collection of benchmarks that measure the throughput of scanning large log-like inputs for
+ * regular expression matches with {@link Matcher#find()}. Each operation scans the whole input and
+ * counts the matches. The inputs are held as lines, as one {@link String}, and as a memory-mapped
+ * file. The file is a {@link MappedCorpus} with the whole input as its only record, so it is
+ * generated once and shared by every fork.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 20, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(10)
+public class RegexScan {
+
+  /**
+   * State used by the benchmarks to hold onto the input and the regex object so their construction
+   * is not considered part of the test.
+   */
+  @State(Scope.Benchmark)
+  public static class StateInput {
+    MappedCorpus corpus;
+
+    String[] lines;
+
+    MappedCharSequence mapped;
+
+    Pattern pattern;
+
+    @Param({"1048576", "67108864"})
+    int size;
+
+    String text;
+
+    @Setup(Level.Trial)
+    public void onTrialSetup() throws IOException {
+      pattern = Pattern.compile("ERROR [a-z]+ id=\\d+");
+
+      corpus = MappedCorpus.open("regex-scan-" + size, this::generateInput);
+      text = new String(corpus.bytes(0), StandardCharsets.ISO_8859_1);
+      lines = text.split("\n");
+      mapped = new MappedCharSequence(corpus.record(0));
+    }
+
+    private void generateInput(Workload workload, MappedCorpus.RecordWriter writer)
+        throws IOException {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream(size + 1000);
+      while (bos.size() < size) {
+        byte[] line = randomLine(workload).getBytes(StandardCharsets.ISO_8859_1);
+        bos.write(line);
+        bos.write('\n');
+      }
+      writer.write(bos.toByteArray());
+    }
+
+    private static String randomLine(Workload workload) {
+      StringBuilder b = new StringBuilder(100);
+      b.append("2021-03-").append(workload.nextInt(10, 29)).append("T12:");
+      b.append(workload.nextInt(10, 59)).append(':').append(workload.nextInt(10, 59)).append(' ');
+      b.append(workload.nextInt(100) == 0 ? "ERROR " : "INFO  ");
+      b.append(workload.nextString(4, 11)).append(" id=").append(workload.nextInt(1000000));
+      int words = workload.nextInt(2, 9);
+      for (int i = 0; i < words; ++i) {
+        b.append(' ').append(workload.nextString(2, 9));
+      }
+      return b.toString();
+    }
+  }
+
+  /**
+   * State used by the benchmarks to hold onto a reusable {@link Matcher} and report the amount of
+   * input that is scanned.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class StateMatcher {
+    public long bytes;
+
+    Matcher matcher;
+
+    @Setup(Level.Trial)
+    public void onTrialSetup(StateInput input) {
+      matcher = input.pattern.matcher("");
+    }
+  }
+
+  /**
+   * Benchmark that measures the throughput of scanning each line with a new {@link Matcher}.
+   */
+  @Benchmark
+  public int findInLinesUsingNewMatcher(StateInput input, StateMatcher state) {
+    int count = 0;
+    for (String line : input.lines) {
+      Matcher matcher = input.pattern.matcher(line);
+      while (matcher.find()) {
+        ++count;
+      }
+    }
+    state.bytes += input.text.length();
+    return count;
+  }
+
+  /**
+   * Benchmark that measures the throughput of scanning each line with one {@link Matcher} reused
+   * through {@link Matcher#reset(CharSequence)}.
+   */
+  @Benchmark
+  public int findInLinesUsingReusedMatcher(StateInput input, StateMatcher state) {
+    int count = 0;
+    Matcher matcher = state.matcher;
+    for (String line : input.lines) {
+      matcher.reset(line);
+      while (matcher.find()) {
+        ++count;
+      }
+    }
+    state.bytes += input.text.length();
+    return count;
+  }
+
+  /**
+   * Benchmark that measures the throughput of scanning a memory-mapped file through a {@link
+   * MappedCharSequence} without building any {@link String}.
+   */
+  @Benchmark
+  public int findInMappedFile(StateInput input, StateMatcher state) {
+    int count = 0;
+    Matcher matcher = state.matcher;
+    matcher.reset(input.mapped);
+    while (matcher.find()) {
+      ++count;
+    }
+    state.bytes += input.mapped.length();
+    return count;
+  }
+
+  /**
+   * Benchmark that measures the throughput of copying a memory-mapped file into a {@link String}
+   * and scanning it. The matcher is reset afterwards so it does not keep the copy reachable.
+   */
+  @Benchmark
+  public int findInReadFile(StateInput input, StateMatcher state) {
+    String content = new String(input.corpus.bytes(0), StandardCharsets.ISO_8859_1);
+    int count = 0;
+    Matcher matcher = state.matcher;
+    matcher.reset(content);
+    while (matcher.find()) {
+      ++count;
+    }
+    matcher.reset("");
+    state.bytes += content.length();
+    return count;
+  }
+
+  /** Benchmark that measures the throughput of scanning the whole input as one {@link String}. */
+  @Benchmark
+  public int findInString(StateInput input, StateMatcher state) {
+    int count = 0;
+    Matcher matcher = state.matcher;
+    matcher.reset(input.text);
+    while (matcher.find()) {
+      ++count;
+    }
+    state.bytes += input.text.length();
+    return count;
+  }
+}
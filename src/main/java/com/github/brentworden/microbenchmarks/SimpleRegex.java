@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.util.regex.Pattern;
+
+/**
+ * A regular expression front end that recognizes simple patterns and matches them without the
+ * {@link Pattern} engine. Whole-input matching of an optionally anchored character class with a
+ * quantifier, such as {@code ^[abcd]+$}, is done with a bitset lookup per character and a plain
+ * literal is compared directly. Neither allocates while matching. Every other pattern falls back to
+ * a compiled {@link Pattern}.
+ */
+public abstract class SimpleRegex {
+
+  /** Matches input consisting of a repeated character class using a bitset lookup table. */
+  private static class CharacterClassRegex extends SimpleRegex {
+    private final long[] bits;
+
+    private final boolean matchesAbove;
+
+    private final int max;
+
+    private final int min;
+
+    CharacterClassRegex(String regex, long[] bits, boolean matchesAbove, int min, int max) {
+      super(regex);
+      this.bits = bits;
+      this.matchesAbove = matchesAbove;
+      this.max = max;
+      this.min = min;
+    }
+
+    @Override
+    boolean mayStartWith(char c) {
+      if (min == 0) {
+        return true;
+      }
+      return c < TABLE_SIZE ? (bits[c >>> 6] & (1L << c)) != 0 : matchesAbove;
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+      int length = input.length();
+      if (length < min || length > max) {
+        return false;
+      }
+      for (int i = 0; i < length; ++i) {
+        char c = input.charAt(i);
+        if (c < TABLE_SIZE) {
+          if ((bits[c >>> 6] & (1L << c)) == 0) {
+            return false;
+          }
+        } else if (!matchesAbove) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** Matches input that is exactly equal to a literal. */
+  private static class LiteralRegex extends SimpleRegex {
+    private final String literal;
+
+    LiteralRegex(String regex, String literal) {
+      super(regex);
+      this.literal = literal;
+    }
+
+    @Override
+    boolean mayStartWith(char c) {
+      return !literal.isEmpty() && literal.charAt(0) == c;
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+      int length = literal.length();
+      if (input.length() != length) {
+        return false;
+      }
+      for (int i = 0; i < length; ++i) {
+        if (input.charAt(i) != literal.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** Matches input using a compiled {@link Pattern}. */
+  private static class PatternRegex extends SimpleRegex {
+    private final int leadingCharacter;
+
+    private final Pattern pattern;
+
+    PatternRegex(String regex) {
+      super(regex);
+      this.leadingCharacter = leadingCharacter(regex);
+      this.pattern = Pattern.compile(regex);
+    }
+
+    @Override
+    boolean mayStartWith(char c) {
+      return leadingCharacter < 0 || leadingCharacter == c;
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+      return pattern.matcher(input).matches();
+    }
+  }
+
+  private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+  private static final int TABLE_SIZE = 256;
+
+  /**
+   * Compiles a regular expression, recognizing the simple forms that can be matched without the
+   * {@link Pattern} engine.
+   *
+   * @param regex the regular expression.
+   * @return the compiled regular expression.
+   * @throws java.util.regex.PatternSyntaxException if the regular expression is not valid.
+   */
+  public static SimpleRegex compile(String regex) {
+    int start = regex.startsWith("^") ? 1 : 0;
+    int end = regex.length();
+    if (end > start && regex.charAt(end - 1) == '$' && !isEscaped(regex, end - 1)) {
+      --end;
+    }
+
+    SimpleRegex simple = null;
+    if (start < end && regex.charAt(start) == '[') {
+      simple = compileCharacterClass(regex, start, end);
+    } else {
+      simple = compileLiteral(regex, start, end);
+    }
+    if (simple == null) {
+      simple = new PatternRegex(regex);
+    }
+    return simple;
+  }
+
+  private static SimpleRegex compileCharacterClass(String regex, int start, int end) {
+    long[] bits = new long[TABLE_SIZE / 64];
+    int i = start + 1;
+    boolean negated = i < end && regex.charAt(i) == '^';
+    if (negated) {
+      ++i;
+    }
+
+    boolean closed = false;
+    while (i < end) {
+      char c = regex.charAt(i++);
+      if (c == ']') {
+        closed = true;
+        break;
+      } else if (c == '[' || (c == '&' && i < end && regex.charAt(i) == '&')) {
+        return null;
+      } else if (c == '\\') {
+        if (i >= end || Character.isLetterOrDigit(regex.charAt(i))) {
+          return null;
+        }
+        c = regex.charAt(i++);
+      }
+
+      char last = c;
+      if (i + 1 < end && regex.charAt(i) == '-' && regex.charAt(i + 1) != ']') {
+        last = regex.charAt(i + 1);
+        if (last == '\\' || last == '[') {
+          return null;
+        }
+        i += 2;
+      }
+      if (last < c || last >= TABLE_SIZE) {
+        return null;
+      }
+      for (char x = c; x <= last; ++x) {
+        bits[x >>> 6] |= 1L << x;
+      }
+    }
+    if (!closed || i == start + (negated ? 3 : 2)) {
+      return null;
+    }
+
+    int[] quantifier = parseQuantifier(regex, i, end);
+    if (quantifier == null) {
+      return null;
+    }
+    if (negated) {
+      // A negated class matches a supplementary character as one code point, which only counts
+      // the same as two chars when the repetition is unbounded with a minimum of at most one.
+      if (quantifier[0] > 1 || quantifier[1] != Integer.MAX_VALUE) {
+        return null;
+      }
+      for (int j = 0; j < bits.length; ++j) {
+        bits[j] = ~bits[j];
+      }
+    }
+    return new CharacterClassRegex(regex, bits, negated, quantifier[0], quantifier[1]);
+  }
+
+  private static SimpleRegex compileLiteral(String regex, int start, int end) {
+    StringBuilder literal = new StringBuilder(end - start);
+    int i = start;
+    while (i < end) {
+      char c = regex.charAt(i++);
+      if (c == '\\') {
+        if (i >= end || Character.isLetterOrDigit(regex.charAt(i))) {
+          return null;
+        }
+        c = regex.charAt(i++);
+      } else if (METACHARACTERS.indexOf(c) >= 0) {
+        return null;
+      }
+      literal.append(c);
+    }
+    return new LiteralRegex(regex, literal.toString());
+  }
+
+  private static boolean hasAlternation(String regex) {
+    for (int i = 0; i < regex.length(); ++i) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        ++i;
+      } else if (c == '|') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isEscaped(String regex, int index) {
+    int backslashes = 0;
+    for (int i = index - 1; i >= 0 && regex.charAt(i) == '\\'; --i) {
+      ++backslashes;
+    }
+    return (backslashes & 1) == 1;
+  }
+
+  /**
+   * Returns the literal character every match of a regular expression must start with, or -1 when
+   * there is no such character or it cannot be determined without a full parse.
+   */
+  private static int leadingCharacter(String regex) {
+    if (hasAlternation(regex)) {
+      return -1;
+    }
+    int length = regex.length();
+    int i = regex.startsWith("^") ? 1 : 0;
+    if (i >= length) {
+      return -1;
+    }
+
+    char c = regex.charAt(i++);
+    if (c == '\\') {
+      if (i >= length || Character.isLetterOrDigit(regex.charAt(i))) {
+        return -1;
+      }
+      c = regex.charAt(i++);
+    } else if (METACHARACTERS.indexOf(c) >= 0) {
+      return -1;
+    }
+    if (i < length && "?*{".indexOf(regex.charAt(i)) >= 0) {
+      return -1;
+    }
+    return c;
+  }
+
+  private static int[] parseQuantifier(String regex, int start, int end) {
+    if (start == end) {
+      return new int[] {1, 1};
+    }
+    if (start + 1 == end) {
+      switch (regex.charAt(start)) {
+        case '*':
+          return new int[] {0, Integer.MAX_VALUE};
+        case '+':
+          return new int[] {1, Integer.MAX_VALUE};
+        case '?':
+          return new int[] {0, 1};
+        default:
+          return null;
+      }
+    }
+    if (regex.charAt(start) != '{' || regex.charAt(end - 1) != '}') {
+      return null;
+    }
+
+    String bounds = regex.substring(start + 1, end - 1);
+    int comma = bounds.indexOf(',');
+    try {
+      if (comma < 0) {
+        int count = Integer.parseInt(bounds);
+        return count >= 0 ? new int[] {count, count} : null;
+      }
+      int min = Integer.parseInt(bounds.substring(0, comma));
+      int max =
+          comma == bounds.length() - 1
+              ? Integer.MAX_VALUE
+              : Integer.parseInt(bounds.substring(comma + 1));
+      return 0 <= min && min <= max ? new int[] {min, max} : null;
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  private final String regex;
+
+  SimpleRegex(String regex) {
+    this.regex = regex;
+  }
+
+  /**
+   * Attempts to match the entire input against this regular expression.
+   *
+   * @param input the character sequence to be matched.
+   * @return {@code true} if the entire input matches.
+   */
+  public abstract boolean matches(CharSequence input);
+
+  /**
+   * Returns whether a non-empty input starting with a character may match this regular expression.
+   * This is conservative; it returns {@code true} whenever the answer is not known.
+   *
+   * @param c the first character of the input.
+   * @return {@code false} if no input starting with the character can match.
+   */
+  abstract boolean mayStartWith(char c);
+
+  /**
+   * Returns whether this regular expression falls back to the {@link Pattern} engine.
+   *
+   * @return {@code true} if matching uses a compiled {@link Pattern}.
+   */
+  public boolean usesPattern() {
+    return this instanceof PatternRegex;
+  }
+
+  @Override
+  public String toString() {
+    return regex;
+  }
+}
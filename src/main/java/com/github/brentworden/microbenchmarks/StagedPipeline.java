@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Runs a sequence of stages over micro-batches of records, each stage on its own thread. Stages are
+ * connected by bounded queues, so a slow stage holds back the stages before it instead of letting
+ * work pile up. The queue after the last stage is unbounded so a single thread can submit batches
+ * and then take the results.
+ */
+public final class StagedPipeline implements AutoCloseable {
+
+  /** A batch of records moving through the pipeline. */
+  public static final class Batch {
+    final Object[] records;
+
+    final long submittedNanos;
+
+    Batch(Object[] records, long submittedNanos) {
+      this.records = records;
+      this.submittedNanos = submittedNanos;
+    }
+
+    /**
+     * Returns the records of the batch, which are replaced by each stage's output.
+     *
+     * @return the records.
+     */
+    public Object[] records() {
+      return records;
+    }
+
+    /**
+     * Returns when the batch was submitted, as given by {@link System#nanoTime()}.
+     *
+     * @return the submission time.
+     */
+    public long submittedNanos() {
+      return submittedNanos;
+    }
+  }
+
+  /** A transformation applied to every record by one stage of the pipeline. */
+  public interface Stage {
+
+    /**
+     * Transforms a record.
+     *
+     * @param record the output of the previous stage.
+     * @return the input of the next stage.
+     * @throws Exception if the record cannot be transformed.
+     */
+    Object apply(Object record) throws Exception;
+  }
+
+  private static final Batch END = new Batch(new Object[0], 0);
+
+  private volatile Throwable failure;
+
+  private final List<BlockingQueue<Batch>> queues = new ArrayList<>();
+
+  private final List<Thread> threads = new ArrayList<>();
+
+  /**
+   * Creates a pipeline and starts one thread per stage.
+   *
+   * @param stages the stages, in order. Each stage is only ever called by its own thread.
+   * @param queueCapacity the number of batches that can wait between two stages.
+   */
+  public StagedPipeline(List<? extends Stage> stages, int queueCapacity) {
+    for (int i = 0; i < stages.size(); ++i) {
+      queues.add(new ArrayBlockingQueue<>(queueCapacity));
+    }
+    queues.add(new LinkedBlockingQueue<>());
+    for (int i = 0; i < stages.size(); ++i) {
+      Stage stage = stages.get(i);
+      BlockingQueue<Batch> in = queues.get(i);
+      BlockingQueue<Batch> out = queues.get(i + 1);
+      Thread thread = new Thread(() -> runStage(stage, in, out), "pipeline-stage-" + i);
+      thread.setDaemon(true);
+      thread.start();
+      threads.add(thread);
+    }
+  }
+
+  /**
+   * Stops the stage threads once the batches already submitted have passed through. If the calling
+   * thread is interrupted while waiting, the stage threads, which are daemons, are left to finish
+   * on their own and the interrupt status is restored.
+   */
+  @Override
+  public void close() {
+    try {
+      queues.get(0).put(END);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void runStage(Stage stage, BlockingQueue<Batch> in, BlockingQueue<Batch> out) {
+    try {
+      while (true) {
+        Batch batch = in.take();
+        if (batch != END && failure == null) {
+          try {
+            Object[] records = batch.records;
+            for (int i = 0; i < records.length; ++i) {
+              records[i] = stage.apply(records[i]);
+            }
+          } catch (Exception ex) {
+            failure = ex;
+          }
+        }
+        out.put(batch);
+        if (batch == END) {
+          return;
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Takes the next batch that has passed through every stage, if there is one.
+   *
+   * @return the batch, holding the outputs of the last stage, or {@code null} if none is ready.
+   * @throws IllegalStateException if a stage failed.
+   */
+  public Batch poll() {
+    Batch batch = queues.get(queues.size() - 1).poll();
+    if (failure != null) {
+      throw new IllegalStateException("Pipeline stage failed", failure);
+    }
+    return batch;
+  }
+
+  /**
+   * Submits a batch of records, waiting while the first stage's queue is full.
+   *
+   * @param records the records, which are replaced by the outputs as the batch moves through.
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  public void submit(Object[] records) throws InterruptedException {
+    queues.get(0).put(new Batch(records, System.nanoTime()));
+  }
+
+  /**
+   * Takes the next batch that has passed through every stage, waiting if there is none.
+   *
+   * @return the batch, holding the outputs of the last stage.
+   * @throws InterruptedException if interrupted while waiting.
+   * @throws IllegalStateException if a stage failed.
+   */
+  public Batch take() throws InterruptedException {
+    Batch batch = queues.get(queues.size() - 1).take();
+    if (failure != null) {
+      throw new IllegalStateException("Pipeline stage failed", failure);
+    }
+    return batch;
+  }
+}
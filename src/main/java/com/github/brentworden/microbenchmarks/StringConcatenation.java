@@ -30,7 +30,8 @@
  */
 package com.github.brentworden.microbenchmarks;
 
-import java.util.Random;
+import java.nio.charset.StandardCharsets;
+import java.util.StringJoiner;
 import java.util.concurrent.TimeUnit;
 
 import org.openjdk.jmh.annotations.Benchmark;
@@ -40,14 +41,26 @@ import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 
 /**
  * Collection of benchmarks that measure the throughput of concatenating strings using several
  * approaches.
+ *
+ * <p>How the {@code +} operator is compiled depends on the class file target. For Java 8 it is a
+ * {@link StringBuilder} chain and for Java 9 and later it is an {@code invokedynamic} call to
+ * {@code StringConcatFactory}. Build with the {@code java11} profile to produce a jar whose classes
+ * use the latter, and run both jars on the same JDK to compare the two strategies.
+ *
+ * <p>The reused {@link StringBuilder} benchmarks trade allocation of a new builder for a builder
+ * that is retained between operations. Run them with {@code -prof gc} to report the allocation per
+ * operation next to the throughput. The {@code MaxThreads} variants run with every available
+ * hardware thread.
  */
 @BenchmarkMode(Mode.Throughput)
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
@@ -62,37 +75,181 @@ public class StringConcatenation {
    */
   @State(Scope.Benchmark)
   public static class StateStringParts {
+    int exactCapacity;
+
+    String format;
+
+    int largeCapacity;
+
+    /**
+     * The number of parts to concatenate. {@link StringConcatenation#concatenationUsingAddition}
+     * only supports 2, 5 and 10, so any other value fails that benchmark but not the others.
+     */
+    @Param({"2", "5", "10"})
+    int partCount;
+
+    @Param({"10", "100"})
+    int partLength;
+
     String[] parts;
 
-    final Random rng = new Random();
+    final Workload workload = Workload.create();
+
+    int smallCapacity;
 
     @Setup(Level.Iteration)
     public void onIterationSetup() {
-      parts =
-          new String[] {
-            randomString(10),
-            randomString(10),
-            randomString(10),
-            randomString(10),
-            randomString(10),
-          };
-    }
+      parts = new String[partCount];
+      for (int i = 0; i < partCount; ++i) {
+        parts[i] = workload.nextString(partLength);
+      }
+
+      exactCapacity = partCount * partLength;
+      largeCapacity = exactCapacity * 6 / 5;
+      smallCapacity = exactCapacity * 4 / 5;
 
-    private String randomString(int length) {
-      char[] c = new char[length];
-      for (int i = 0; i < length; ++i) {
-        c[i] = (char) ('a' + rng.nextInt('z' - 'a'));
+      StringBuilder b = new StringBuilder(partCount * 2);
+      for (int i = 0; i < partCount; ++i) {
+        b.append("%s");
       }
-      return new String(c);
+      format = b.toString();
     }
   }
 
+  /**
+   * State used by the benchmarks to hold onto a {@link StringBuilder} owned by the benchmark thread
+   * that is reused for every operation.
+   */
+  @State(Scope.Thread)
+  public static class StateStringBuilder {
+    final StringBuilder builder = new StringBuilder();
+  }
+
+  private static final ThreadLocal<StringBuilder> THREAD_LOCAL_BUILDER =
+      ThreadLocal.withInitial(StringBuilder::new);
+
   /**
    * Benchmark that measures the throughput of string concatenation using the {@code +} operator.
+   * Each supported part count (2, 5 or 10) is a single concatenation expression so the compiler's
+   * strategy is what is measured.
    */
   @Benchmark
   public String concatenationUsingAddition(StateStringParts state) {
-    return state.parts[0] + state.parts[1] + state.parts[2] + state.parts[3] + state.parts[4];
+    String[] p = state.parts;
+    switch (p.length) {
+      case 2:
+        return p[0] + p[1];
+      case 5:
+        return p[0] + p[1] + p[2] + p[3] + p[4];
+      case 10:
+        return p[0] + p[1] + p[2] + p[3] + p[4] + p[5] + p[6] + p[7] + p[8] + p[9];
+      default:
+        throw new IllegalStateException("partCount must be 2, 5 or 10: " + p.length);
+    }
+  }
+
+  /**
+   * Benchmark that measures the throughput of string concatenation by copying the parts into a
+   * {@code char} array of the exact necessary size and creating one {@link String} from it.
+   */
+  @Benchmark
+  public String concatenationUsingCharArray(StateStringParts state) {
+    char[] c = new char[state.exactCapacity];
+    int position = 0;
+    for (String part : state.parts) {
+      int length = part.length();
+      part.getChars(0, length, c, position);
+      position += length;
+    }
+    return new String(c, 0, position);
+  }
+
+  /**
+   * Benchmark that measures the throughput of string concatenation using a chain of {@link
+   * String#concat(String)} calls.
+   */
+  @Benchmark
+  public String concatenationUsingConcat(StateStringParts state) {
+    String[] parts = state.parts;
+    String result = parts[0];
+    for (int i = 1; i < parts.length; ++i) {
+      result = result.concat(parts[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Benchmark that measures the throughput of string concatenation by copying the parts into a
+   * Latin-1 {@code byte} array of the exact necessary size and creating one {@link String} from it.
+   * This is only correct because every part contains only Latin-1 characters.
+   */
+  @Benchmark
+  @SuppressWarnings("deprecation")
+  public String concatenationUsingLatin1ByteArray(StateStringParts state) {
+    byte[] b = new byte[state.exactCapacity];
+    int position = 0;
+    for (String part : state.parts) {
+      int length = part.length();
+      part.getBytes(0, length, b, position);
+      position += length;
+    }
+    return new String(b, 0, position, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Benchmark that measures the throughput of string concatenation using a {@link StringBuilder}
+   * owned by the benchmark thread that is reset with {@link StringBuilder#setLength(int)} and
+   * reused.
+   */
+  @Benchmark
+  public String concatenationUsingReusedStringBuilder(
+      StateStringParts state, StateStringBuilder builder) {
+    StringBuilder b = builder.builder;
+    b.setLength(0);
+    return append(b, state.parts);
+  }
+
+  /**
+   * Benchmark that measures the throughput of string concatenation using a {@link StringBuilder}
+   * owned by each benchmark thread that is reset with {@link StringBuilder#setLength(int)} and
+   * reused, with every available hardware thread.
+   */
+  @Benchmark
+  @Threads(Threads.MAX)
+  public String concatenationUsingReusedStringBuilderMaxThreads(
+      StateStringParts state, StateStringBuilder builder) {
+    return concatenationUsingReusedStringBuilder(state, builder);
+  }
+
+  /**
+   * Benchmark that measures the throughput of string concatenation using {@link String#format}, as
+   * a known slow baseline.
+   */
+  @Benchmark
+  public String concatenationUsingStringFormat(StateStringParts state) {
+    return String.format(state.format, (Object[]) state.parts);
+  }
+
+  /**
+   * Benchmark that measures the throughput of string concatenation using {@link
+   * String#join(CharSequence, CharSequence...)} with an empty delimiter.
+   */
+  @Benchmark
+  public String concatenationUsingStringJoin(StateStringParts state) {
+    return String.join("", state.parts);
+  }
+
+  /**
+   * Benchmark that measures the throughput of string concatenation using a {@link StringJoiner}
+   * with an empty delimiter.
+   */
+  @Benchmark
+  public String concatenationUsingStringJoiner(StateStringParts state) {
+    StringJoiner joiner = new StringJoiner("");
+    for (String part : state.parts) {
+      joiner.add(part);
+    }
+    return joiner.toString();
   }
 
   /**
@@ -101,13 +258,7 @@ public class StringConcatenation {
    */
   @Benchmark
   public String concatenationUsingStringBuilder(StateStringParts state) {
-    StringBuilder b = new StringBuilder();
-    b.append(state.parts[0])
-        .append(state.parts[1])
-        .append(state.parts[2])
-        .append(state.parts[3])
-        .append(state.parts[4]);
-    return b.toString();
+    return append(new StringBuilder(), state.parts);
   }
 
   /**
@@ -116,13 +267,18 @@ public class StringConcatenation {
    */
   @Benchmark
   public String concatenationUsingStringBuilderWithExactInitialCapacity(StateStringParts state) {
-    StringBuilder b = new StringBuilder(50);
-    b.append(state.parts[0])
-        .append(state.parts[1])
-        .append(state.parts[2])
-        .append(state.parts[3])
-        .append(state.parts[4]);
-    return b.toString();
+    return append(new StringBuilder(state.exactCapacity), state.parts);
+  }
+
+  /**
+   * Benchmark that measures the throughput of string concatenation using a {@link StringBuilder}
+   * created with the exact necessary initial capacity, with every available hardware thread.
+   */
+  @Benchmark
+  @Threads(Threads.MAX)
+  public String concatenationUsingStringBuilderWithExactInitialCapacityMaxThreads(
+      StateStringParts state) {
+    return concatenationUsingStringBuilderWithExactInitialCapacity(state);
   }
 
   /**
@@ -131,13 +287,7 @@ public class StringConcatenation {
    */
   @Benchmark
   public String concatenationUsingStringBuilderWithLargeInitialCapacity(StateStringParts state) {
-    StringBuilder b = new StringBuilder(60);
-    b.append(state.parts[0])
-        .append(state.parts[1])
-        .append(state.parts[2])
-        .append(state.parts[3])
-        .append(state.parts[4]);
-    return b.toString();
+    return append(new StringBuilder(state.largeCapacity), state.parts);
   }
 
   /**
@@ -146,12 +296,36 @@ public class StringConcatenation {
    */
   @Benchmark
   public String concatenationUsingStringBuilderWithSmallInitialCapacity(StateStringParts state) {
-    StringBuilder b = new StringBuilder(40);
-    b.append(state.parts[0])
-        .append(state.parts[1])
-        .append(state.parts[2])
-        .append(state.parts[3])
-        .append(state.parts[4]);
+    return append(new StringBuilder(state.smallCapacity), state.parts);
+  }
+
+  /**
+   * Benchmark that measures the throughput of string concatenation using a {@link StringBuilder}
+   * obtained from a {@link ThreadLocal} that is reset with {@link StringBuilder#setLength(int)} and
+   * reused.
+   */
+  @Benchmark
+  public String concatenationUsingThreadLocalStringBuilder(StateStringParts state) {
+    StringBuilder b = THREAD_LOCAL_BUILDER.get();
+    b.setLength(0);
+    return append(b, state.parts);
+  }
+
+  /**
+   * Benchmark that measures the throughput of string concatenation using a {@link StringBuilder}
+   * obtained from a {@link ThreadLocal} that is reset with {@link StringBuilder#setLength(int)} and
+   * reused, with every available hardware thread.
+   */
+  @Benchmark
+  @Threads(Threads.MAX)
+  public String concatenationUsingThreadLocalStringBuilderMaxThreads(StateStringParts state) {
+    return concatenationUsingThreadLocalStringBuilder(state);
+  }
+
+  private static String append(StringBuilder b, String[] parts) {
+    for (String part : parts) {
+      b.append(part);
+    }
     return b.toString();
   }
 }
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import com.github.brentworden.microbenchmarks.Coders.TestObject;
+import com.github.brentworden.microbenchmarks.Coders.TestObjectCoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.beam.sdk.coders.AtomicCoder;
+import org.apache.beam.sdk.coders.BooleanCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.CoderException;
+import org.apache.beam.sdk.util.VarInt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collection of benchmarks that measure the throughput of decoding a batch of {@link TestObject}
+ * instances whose string values repeat, with and without deduplicating the decoded strings.
+ *
+ * <p>Run with {@code -prof com.github.brentworden.microbenchmarks.GaugeProfiler} to also report,
+ * as {@code retainedStrings} and {@code retainedChars}, the number of distinct {@link String}
+ * instances, and their total length, held by the last decoded batch of each iteration. They are
+ * proportional to the heap the decoded strings retain.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 20, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(10)
+public class StringDeduplication {
+
+  /**
+   * State used by the benchmarks to hold onto the encoded batch and coders so their construction is
+   * not considered part of the test.
+   */
+  @State(Scope.Benchmark)
+  public static class StateEncoded {
+    @Param({"16", "1024", "65536"})
+    int cardinality;
+
+    Coder<TestObject> customCoder;
+
+    Coder<TestObject> deduplicatingCoder;
+
+    byte[][] encoded;
+
+    @Param({"4096"})
+    int tableSize;
+
+    @Setup(Level.Trial)
+    public void onTrialSetup() throws IOException {
+      customCoder = TestObjectCoder.of();
+      deduplicatingCoder = new DeduplicatingTestObjectCoder(new StringDeduplicator(tableSize, 64));
+
+      MappedCorpus corpus =
+          MappedCorpus.open("dedup-testobjects-" + cardinality, this::generateBatch);
+      encoded = new byte[corpus.size()][];
+      for (int i = 0; i < encoded.length; ++i) {
+        encoded[i] = corpus.bytes(i);
+      }
+    }
+
+    private void generateBatch(Workload workload, MappedCorpus.RecordWriter writer)
+        throws IOException {
+      String[] vocabulary = new String[cardinality];
+      for (int i = 0; i < cardinality; ++i) {
+        vocabulary[i] = workload.nextString(5, 19);
+      }
+
+      ByteArrayOutputStream bos = new ByteArrayOutputStream(100);
+      for (int i = 0; i < BATCH_SIZE; ++i) {
+        TestObject testObject = new TestObject();
+        testObject.setIntValue(workload.nextInt(100000));
+        testObject.setNonNullableStringValue(vocabulary[workload.nextInt(cardinality)]);
+        if (workload.nextInt(8) != 0) {
+          testObject.setNullableStringValue(vocabulary[workload.nextInt(cardinality)]);
+        }
+
+        bos.reset();
+        customCoder.encode(testObject, bos);
+        writer.write(bos.toByteArray());
+      }
+    }
+  }
+
+  /**
+   * State used by the benchmarks to hold onto the last decoded batch and report the strings it
+   * retains.
+   */
+  @State(Scope.Thread)
+  public static class StateDecoded {
+    final TestObject[] decoded = new TestObject[BATCH_SIZE];
+
+    @TearDown(Level.Iteration)
+    public void onIterationTearDown() {
+      Set<String> strings = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (TestObject testObject : decoded) {
+        if (testObject != null) {
+          strings.add(testObject.getNonNullableStringValue());
+          if (testObject.getNullableStringValue() != null) {
+            strings.add(testObject.getNullableStringValue());
+          }
+        }
+      }
+
+      long retainedChars = 0;
+      for (String string : strings) {
+        retainedChars += string.length();
+      }
+      GaugeProfiler.record("retainedChars", retainedChars, "chars");
+      GaugeProfiler.record("retainedStrings", strings.size(), "strings");
+    }
+  }
+
+  /**
+   * A {@link Coder} that reads the same format as {@link TestObjectCoder} but decodes strings
+   * through a {@link StringDeduplicator}.
+   */
+  public static class DeduplicatingTestObjectCoder extends AtomicCoder<TestObject> {
+
+    private static final BooleanCoder BOOLEAN_CODER = BooleanCoder.of();
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[64]);
+
+    private static final long serialVersionUID = 1L;
+
+    private final StringDeduplicator deduplicator;
+
+    public DeduplicatingTestObjectCoder(StringDeduplicator deduplicator) {
+      this.deduplicator = deduplicator;
+    }
+
+    @Override
+    public TestObject decode(InputStream inStream) throws CoderException, IOException {
+      TestObject newTestObject = new TestObject();
+
+      newTestObject.setIntValue(VarInt.decodeInt(inStream));
+      newTestObject.setNonNullableStringValue(decodeString(inStream));
+      Boolean nullableStringValueExists = BOOLEAN_CODER.decode(inStream);
+      if (nullableStringValueExists.booleanValue()) {
+        newTestObject.setNullableStringValue(decodeString(inStream));
+      }
+
+      return newTestObject;
+    }
+
+    @Override
+    public void encode(TestObject value, OutputStream outStream)
+        throws CoderException, IOException {
+      TestObjectCoder.of().encode(value, outStream);
+    }
+
+    private String decodeString(InputStream inStream) throws IOException {
+      int length = VarInt.decodeInt(inStream);
+      byte[] scratch = SCRATCH.get();
+      if (scratch.length < length) {
+        scratch = new byte[Math.max(length, scratch.length * 2)];
+        SCRATCH.set(scratch);
+      }
+
+      int read = 0;
+      while (read < length) {
+        int n = inStream.read(scratch, read, length - read);
+        if (n < 0) {
+          throw new EOFException("Expected " + length + " bytes but read " + read);
+        }
+        read += n;
+      }
+      return deduplicator.get(scratch, 0, length);
+    }
+  }
+
+  private static final int BATCH_SIZE = 1000;
+
+  /**
+   * Benchmark that measures the throughput of decoding using a {@link DeduplicatingTestObjectCoder}
+   * that looks up strings in a {@link StringDeduplicator} before creating them.
+   */
+  @Benchmark
+  public TestObject[] decodeUsingDeduplicator(StateEncoded state, StateDecoded decoded)
+      throws IOException {
+    TestObject[] batch = decoded.decoded;
+    for (int i = 0; i < BATCH_SIZE; ++i) {
+      batch[i] = state.deduplicatingCoder.decode(new ByteArrayInputStream(state.encoded[i]));
+    }
+    return batch;
+  }
+
+  /**
+   * Benchmark that measures the throughput of decoding using a {@link TestObjectCoder} and then
+   * deduplicating the strings with {@link String#intern()}.
+   */
+  @Benchmark
+  public TestObject[] decodeUsingStringIntern(StateEncoded state, StateDecoded decoded)
+      throws IOException {
+    TestObject[] batch = decoded.decoded;
+    for (int i = 0; i < BATCH_SIZE; ++i) {
+      TestObject testObject = state.customCoder.decode(new ByteArrayInputStream(state.encoded[i]));
+      testObject.setNonNullableStringValue(testObject.getNonNullableStringValue().intern());
+      if (testObject.getNullableStringValue() != null) {
+        testObject.setNullableStringValue(testObject.getNullableStringValue().intern());
+      }
+      batch[i] = testObject;
+    }
+    return batch;
+  }
+
+  /**
+   * Benchmark that measures the throughput of decoding using a {@link TestObjectCoder} without
+   * deduplicating the strings.
+   */
+  @Benchmark
+  public TestObject[] decodeWithoutDeduplication(StateEncoded state, StateDecoded decoded)
+      throws IOException {
+    TestObject[] batch = decoded.decoded;
+    for (int i = 0; i < BATCH_SIZE; ++i) {
+      batch[i] = state.customCoder.decode(new ByteArrayInputStream(state.encoded[i]));
+    }
+    return batch;
+  }
+}
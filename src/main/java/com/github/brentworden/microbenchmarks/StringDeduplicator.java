@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A bounded, concurrent table that deduplicates strings decoded from UTF-8 bytes. A lookup hashes
+ * and compares the bytes against the cached entry, so a repeated value is returned as the same
+ * {@link String} instance without decoding it again.
+ *
+ * <p>The table is direct mapped; each hash selects a single slot and a miss replaces whatever the
+ * slot held. That keeps lookups lock free and the table bounded, at the cost of losing entries
+ * that collide. Entries are immutable, so a racing reader either sees a complete entry or the
+ * previous one. Values longer than the maximum length are decoded without being cached.
+ *
+ * <p>The table is serializable, cached entries included, so it can be held by a serializable
+ * {@link org.apache.beam.sdk.coders.Coder}.
+ */
+public final class StringDeduplicator implements Serializable {
+
+  /** A cached string along with the bytes it was decoded from. */
+  private static final class Entry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    final byte[] bytes;
+
+    final int hash;
+
+    final String value;
+
+    Entry(byte[] bytes, int hash, String value) {
+      this.bytes = bytes;
+      this.hash = hash;
+      this.value = value;
+    }
+  }
+
+  private static final long serialVersionUID = 1L;
+
+  private final int mask;
+
+  private final int maxLength;
+
+  private final Entry[] table;
+
+  /**
+   * Creates a table.
+   *
+   * @param capacity the number of slots, rounded up to a power of two.
+   * @param maxLength the maximum length in bytes of values that are cached.
+   */
+  public StringDeduplicator(int capacity, int maxLength) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.mask = size - 1;
+    this.maxLength = maxLength;
+    this.table = new Entry[size];
+  }
+
+  /**
+   * Returns the string encoded by a range of UTF-8 bytes, reusing a cached instance when the same
+   * bytes were seen before.
+   *
+   * @param bytes the array holding the encoded string.
+   * @param offset the offset of the first byte of the encoded string.
+   * @param length the number of bytes in the encoded string.
+   * @return the decoded string.
+   */
+  public String get(byte[] bytes, int offset, int length) {
+    if (length > maxLength) {
+      return new String(bytes, offset, length, StandardCharsets.UTF_8);
+    }
+
+    int hash = hash(bytes, offset, length);
+    int index = hash & mask;
+    Entry entry = table[index];
+    if (entry != null && entry.hash == hash && matches(entry.bytes, bytes, offset, length)) {
+      return entry.value;
+    }
+
+    String value = new String(bytes, offset, length, StandardCharsets.UTF_8);
+    table[index] = new Entry(Arrays.copyOfRange(bytes, offset, offset + length), hash, value);
+    return value;
+  }
+
+  private static int hash(byte[] bytes, int offset, int length) {
+    int h = 0;
+    for (int i = offset, end = offset + length; i < end; ++i) {
+      h = 31 * h + bytes[i];
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean matches(byte[] cached, byte[] bytes, int offset, int length) {
+    if (cached.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; ++i) {
+      if (cached[i] != bytes[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
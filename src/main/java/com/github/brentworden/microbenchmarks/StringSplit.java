@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collection of benchmarks that measure the throughput of splitting a comma delimited line into
+ * fields using several approaches.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 20, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(10)
+public class StringSplit {
+
+  /**
+   * State used by the benchmarks to hold onto the line and the regex object so their construction
+   * is not considered part of the test.
+   */
+  @State(Scope.Benchmark)
+  public static class StateLine {
+    @Param({"4", "32"})
+    int fieldCount;
+
+    String line;
+
+    @Param({"64", "1024"})
+    int lineLength;
+
+    Pattern pattern;
+
+    final Workload workload = Workload.create();
+
+    @Setup(Level.Iteration)
+    public void onIterationSetup() {
+      int fieldLength = Math.max(1, (lineLength - (fieldCount - 1)) / fieldCount);
+      StringBuilder b = new StringBuilder(lineLength);
+      for (int i = 0; i < fieldCount; ++i) {
+        if (i > 0) {
+          b.append(',');
+        }
+        b.append(workload.nextString(fieldLength));
+      }
+      line = b.toString();
+    }
+
+    @Setup(Level.Trial)
+    public void onTrialSetup() {
+      pattern = Pattern.compile(",");
+    }
+  }
+
+  /**
+   * State used by the benchmarks to hold onto a tokenizer so its construction is not considered
+   * part of the test.
+   */
+  @State(Scope.Thread)
+  public static class StateTokenizer {
+    final DelimitedTokenizer tokenizer = new DelimitedTokenizer(',');
+  }
+
+  /**
+   * Benchmark that measures the throughput of splitting using a hand-written tokenizer built on
+   * {@link String#indexOf(int, int)}.
+   */
+  @Benchmark
+  public String[] splitUsingIndexOf(StateLine state) {
+    return splitUsingIndexOf(state.line, ',');
+  }
+
+  /**
+   * Benchmark that measures the throughput of splitting using a precompiled {@link Pattern}.
+   */
+  @Benchmark
+  public String[] splitUsingPattern(StateLine state) {
+    return state.pattern.split(state.line);
+  }
+
+  /**
+   * Benchmark that measures the throughput of splitting using {@link String#split(String)} with a
+   * multi-character regex, which is compiled on every call.
+   */
+  @Benchmark
+  public String[] splitUsingStringRegex(StateLine state) {
+    return state.line.split("[,]");
+  }
+
+  /**
+   * Benchmark that measures the throughput of splitting using {@link String#split(String)} with a
+   * single character delimiter, which takes a fast path that does not use a regex.
+   */
+  @Benchmark
+  public String[] splitUsingStringSingleCharacter(StateLine state) {
+    return state.line.split(",");
+  }
+
+  /**
+   * Benchmark that measures the throughput of tokenizing using a {@link DelimitedTokenizer} that
+   * records offsets into the line without allocating.
+   */
+  @Benchmark
+  public int tokenizeUsingOffsets(StateLine state, StateTokenizer tokenizer) {
+    return tokenizer.tokenizer.tokenize(state.line);
+  }
+
+  private static String[] splitUsingIndexOf(String line, char delimiter) {
+    List<String> fields = new ArrayList<>();
+    int start = 0;
+    int end;
+    while ((end = line.indexOf(delimiter, start)) >= 0) {
+      fields.add(line.substring(start, end));
+      start = end + 1;
+    }
+    fields.add(line.substring(start));
+    return fields.toArray(new String[0]);
+  }
+}
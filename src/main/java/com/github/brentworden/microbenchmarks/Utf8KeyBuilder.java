@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Builds composite keys by encoding their parts as UTF-8 directly into a {@link ByteBuffer},
+ * skipping the intermediate concatenated {@link String} and the byte array returned by {@link
+ * String#getBytes(java.nio.charset.Charset)}. Runs of ASCII characters take a fast path, which
+ * writes straight into the backing array of heap buffers. Unpaired surrogates are encoded as
+ * {@code '?'}, matching {@link String#getBytes(java.nio.charset.Charset)}.
+ *
+ * <p>An append that does not fit throws {@link BufferOverflowException} and leaves the buffer's
+ * position where it was before the append, so a caller can retry with a larger buffer.
+ */
+public final class Utf8KeyBuilder {
+
+  private ByteBuffer buffer;
+
+  /**
+   * Creates a builder that writes to a buffer, starting at the buffer's position.
+   *
+   * @param buffer the buffer the keys are written to.
+   */
+  public Utf8KeyBuilder(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * Appends a single character, such as a separator.
+   *
+   * @param c the character.
+   * @return this builder.
+   * @throws BufferOverflowException if the buffer does not have enough space remaining.
+   */
+  public Utf8KeyBuilder append(char c) {
+    if (c < 0x80) {
+      buffer.put((byte) c);
+    } else {
+      encode(c, 0, null);
+    }
+    return this;
+  }
+
+  /**
+   * Appends the UTF-8 encoding of a character sequence.
+   *
+   * @param s the character sequence.
+   * @return this builder.
+   * @throws BufferOverflowException if the buffer does not have enough space remaining, in which
+   *     case nothing is appended.
+   */
+  public Utf8KeyBuilder append(CharSequence s) {
+    int start = buffer.position();
+    try {
+      encode(s);
+    } catch (BufferOverflowException ex) {
+      // cast so a class file built by a later JDK links to the Java 8 method
+      ((Buffer) buffer).position(start);
+      throw ex;
+    }
+    return this;
+  }
+
+  /**
+   * Returns the buffer the keys are written to.
+   *
+   * @return the buffer.
+   */
+  public ByteBuffer buffer() {
+    return buffer;
+  }
+
+  /**
+   * Replaces the buffer the keys are written to, so a builder can be reused.
+   *
+   * @param buffer the buffer the keys are written to.
+   * @return this builder.
+   */
+  public Utf8KeyBuilder reset(ByteBuffer buffer) {
+    this.buffer = buffer;
+    return this;
+  }
+
+  private void encode(CharSequence s) {
+    int length = s.length();
+    int i = 0;
+    ByteBuffer b = buffer;
+    if (b.hasArray()) {
+      byte[] array = b.array();
+      int offset = b.arrayOffset();
+      int position = offset + b.position();
+      int limit = Math.min(offset + b.limit(), position + length);
+      while (position < limit) {
+        char c = s.charAt(i);
+        if (c >= 0x80) {
+          break;
+        }
+        array[position++] = (byte) c;
+        ++i;
+      }
+      ((Buffer) b).position(position - offset);
+    } else {
+      while (i < length && b.hasRemaining()) {
+        char c = s.charAt(i);
+        if (c >= 0x80) {
+          break;
+        }
+        b.put((byte) c);
+        ++i;
+      }
+    }
+
+    while (i < length) {
+      char c = s.charAt(i++);
+      if (c < 0x80) {
+        b.put((byte) c);
+      } else {
+        i = encode(c, i, s);
+      }
+    }
+  }
+
+  /**
+   * Encodes a non-ASCII character, consuming the low surrogate following a high surrogate.
+   *
+   * @return the index of the next character to be encoded.
+   */
+  private int encode(char c, int next, CharSequence s) {
+    ByteBuffer b = buffer;
+    if (c < 0x800) {
+      if (b.remaining() < 2) {
+        throw new BufferOverflowException();
+      }
+      b.put((byte) (0xC0 | (c >> 6)));
+      b.put((byte) (0x80 | (c & 0x3F)));
+    } else if (Character.isSurrogate(c)) {
+      char low;
+      if (Character.isHighSurrogate(c)
+          && s != null
+          && next < s.length()
+          && Character.isLowSurrogate(low = s.charAt(next))) {
+        int codePoint = Character.toCodePoint(c, low);
+        if (b.remaining() < 4) {
+          throw new BufferOverflowException();
+        }
+        b.put((byte) (0xF0 | (codePoint >> 18)));
+        b.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+        b.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        b.put((byte) (0x80 | (codePoint & 0x3F)));
+        return next + 1;
+      }
+      b.put((byte) '?');
+    } else {
+      if (b.remaining() < 3) {
+        throw new BufferOverflowException();
+      }
+      b.put((byte) (0xE0 | (c >> 12)));
+      b.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+      b.put((byte) (0x80 | (c & 0x3F)));
+    }
+    return next;
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import com.github.brentworden.microbenchmarks.Coders.TestObject;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Seeded, reproducible generator of benchmark inputs; strings, numbers, key access sequences and
+ * test objects. Every benchmark state that needs random input creates its own workload, so inputs
+ * are the same across runs, forks and machines, and no random number generator is shared or called
+ * inside a measured method.
+ *
+ * <p>The seed defaults to a constant and can be changed for a whole run with the {@code
+ * microbenchmarks.seed} system property, e.g. {@code -jvmArgsAppend -Dmicrobenchmarks.seed=7}.
+ */
+public final class Workload {
+
+  /** The distributions of keys produced by {@link #keys(Distribution, int, int)}. */
+  public enum Distribution {
+    /** Every key is equally likely. */
+    UNIFORM,
+
+    /** Keys follow a Zipf distribution, where key {@code k} has weight {@code 1 / (k + 1)^0.99}. */
+    ZIPFIAN,
+
+    /** 80% of accesses go to the first 20% of the keys. */
+    HOTSPOT,
+
+    /** Keys are accessed in order, wrapping around at the end of the key space. */
+    SEQUENTIAL
+  }
+
+  private static final long DEFAULT_SEED = 0x5DEECE66DL;
+
+  private static final double HOTSPOT_ACCESS_FRACTION = 0.8;
+
+  private static final double HOTSPOT_KEY_FRACTION = 0.2;
+
+  private static final double ZIPFIAN_EXPONENT = 0.99;
+
+  /**
+   * Creates a workload seeded with the run's seed.
+   *
+   * @return the workload.
+   */
+  public static Workload create() {
+    return new Workload(seed());
+  }
+
+  /**
+   * Creates a workload for one benchmark thread, seeded with the run's seed mixed with the thread
+   * index, so each thread gets a different but reproducible sequence.
+   *
+   * @param threadIndex the index of the benchmark thread.
+   * @return the workload.
+   */
+  public static Workload forThread(int threadIndex) {
+    return new Workload(seed() * 31 + threadIndex);
+  }
+
+  static long seed() {
+    return Long.getLong("microbenchmarks.seed", DEFAULT_SEED);
+  }
+
+  private final Random rng;
+
+  /**
+   * Creates a workload with an explicit seed.
+   *
+   * @param seed the seed.
+   */
+  public Workload(long seed) {
+    this.rng = new Random(seed);
+  }
+
+  /**
+   * Generates a sequence of keys from {@code 0} to {@code keySpace - 1}. The sequence is meant to
+   * be generated outside the measured region and walked by the benchmark.
+   *
+   * @param distribution the distribution of the keys.
+   * @param keySpace the number of distinct keys.
+   * @param count the length of the sequence.
+   * @return the sequence of keys.
+   */
+  public int[] keys(Distribution distribution, int keySpace, int count) {
+    int[] keys = new int[count];
+    switch (distribution) {
+      case UNIFORM:
+        for (int i = 0; i < count; ++i) {
+          keys[i] = rng.nextInt(keySpace);
+        }
+        break;
+      case ZIPFIAN:
+        double[] cumulative = new double[keySpace];
+        double total = 0.0;
+        for (int k = 0; k < keySpace; ++k) {
+          total += 1.0 / Math.pow(k + 1, ZIPFIAN_EXPONENT);
+          cumulative[k] = total;
+        }
+        for (int i = 0; i < count; ++i) {
+          int k = Arrays.binarySearch(cumulative, rng.nextDouble() * total);
+          keys[i] = Math.min(k < 0 ? -k - 1 : k, keySpace - 1);
+        }
+        break;
+      case HOTSPOT:
+        int hotKeys = Math.max(1, (int) (keySpace * HOTSPOT_KEY_FRACTION));
+        for (int i = 0; i < count; ++i) {
+          if (hotKeys == keySpace || rng.nextDouble() < HOTSPOT_ACCESS_FRACTION) {
+            keys[i] = rng.nextInt(hotKeys);
+          } else {
+            keys[i] = hotKeys + rng.nextInt(keySpace - hotKeys);
+          }
+        }
+        break;
+      case SEQUENTIAL:
+        for (int i = 0; i < count; ++i) {
+          keys[i] = i % keySpace;
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported distribution: " + distribution);
+    }
+    return keys;
+  }
+
+  /**
+   * Returns a flat dictionary like the ones written and parsed by the JSON benchmarks; 10 to 49
+   * entries with keys of 5 to 9 letters and values of 5 to 19 letters.
+   *
+   * @return the dictionary.
+   */
+  public Map<String, String> nextDictionary() {
+    Map<String, String> dictionary = new LinkedHashMap<>();
+    int size = nextInt(10, 49);
+    for (int i = 0; i < size; ++i) {
+      String key = nextString(5, 9);
+      String value = nextString(5, 19);
+      dictionary.put(key, value);
+    }
+    return dictionary;
+  }
+
+  /**
+   * Returns a uniformly distributed double in {@code [0, 1)}.
+   *
+   * @return the double.
+   */
+  public double nextDouble() {
+    return rng.nextDouble();
+  }
+
+  /**
+   * Returns a uniformly distributed int in {@code [0, bound)}.
+   *
+   * @param bound the exclusive upper bound.
+   * @return the int.
+   */
+  public int nextInt(int bound) {
+    return rng.nextInt(bound);
+  }
+
+  /**
+   * Returns a uniformly distributed int in {@code [min, max]}.
+   *
+   * @param min the inclusive lower bound.
+   * @param max the inclusive upper bound.
+   * @return the int.
+   */
+  public int nextInt(int min, int max) {
+    return min + rng.nextInt(max - min + 1);
+  }
+
+  /**
+   * Returns a string of lowercase letters.
+   *
+   * @param length the length of the string.
+   * @return the string.
+   */
+  public String nextString(int length) {
+    char[] c = new char[length];
+    for (int i = 0; i < length; ++i) {
+      c[i] = (char) ('a' + rng.nextInt('z' - 'a'));
+    }
+    return new String(c);
+  }
+
+  /**
+   * Returns a string of lowercase letters with a uniformly distributed length.
+   *
+   * @param minLength the inclusive minimum length.
+   * @param maxLength the inclusive maximum length.
+   * @return the string.
+   */
+  public String nextString(int minLength, int maxLength) {
+    return nextString(nextInt(minLength, maxLength));
+  }
+
+  /**
+   * Returns a {@link TestObject} like the ones encoded by the coder benchmarks. The nullable string
+   * is present seven times out of eight.
+   *
+   * @return the test object.
+   */
+  public TestObject nextTestObject() {
+    TestObject testObject = new TestObject();
+    testObject.setIntValue(nextInt(100000));
+    testObject.setNonNullableStringValue(nextString(1, 100));
+    if (nextInt(8) != 0) {
+      testObject.setNullableStringValue(nextString(1, 100));
+    } else {
+      testObject.setNullableStringValue(null);
+    }
+    return testObject;
+  }
+
+  /**
+   * Returns the underlying random number generator, for generators that take a {@link Random}.
+   *
+   * @return the random number generator.
+   */
+  public Random random() {
+    return rng;
+  }
+
+  /**
+   * Generates an array of strings of lowercase letters with uniformly distributed lengths.
+   *
+   * @param count the number of strings.
+   * @param minLength the inclusive minimum length.
+   * @param maxLength the inclusive maximum length.
+   * @return the strings.
+   */
+  public String[] strings(int count, int minLength, int maxLength) {
+    String[] strings = new String[count];
+    for (int i = 0; i < count; ++i) {
+      strings[i] = nextString(minLength, maxLength);
+    }
+    return strings;
+  }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2021, Brent Worden
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.brentworden.microbenchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.brentworden.microbenchmarks.Coders.TestObject;
+import com.github.brentworden.microbenchmarks.Coders.TestObjectCoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collection of benchmarks that measure running a batch of request-like tasks on virtual threads,
+ * a fixed pool of platform threads and a {@link ForkJoinPool}. Each operation submits {@code
+ * taskCount} tasks and waits for all of them, so the throughput mode reports batches per
+ * millisecond (and tasks per millisecond as a secondary result) and the sample time mode reports
+ * the latency distribution of a batch.
+ *
+ * <p>The tasks are CPU bound (JSON validation and a coder round-trip), blocking (a simulated local
+ * I/O wait), a mix of the two like a request handler (decode, wait, then validate) or blocking
+ * while holding a lock. A virtual thread that blocks inside a {@code synchronized} block, as a
+ * {@link LazyInitializeSingleton.DoubleCheckedLockingProvider} would if creating its instance did
+ * I/O, pins its carrier thread, which the comparison with the same wait under a
+ * {@link ReentrantLock} shows.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 20, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(10)
+public class VirtualThreads {
+
+  /** A task run by the benchmarks. */
+  interface Task {
+    void run(int index) throws Exception;
+  }
+
+  /**
+   * State used by the benchmarks to hold onto the executor and task inputs so their construction
+   * is not considered part of the test.
+   */
+  @State(Scope.Benchmark)
+  public static class StateExecutor {
+    TestObjectCoder coder;
+
+    byte[][] encodedTestObjects;
+
+    @Param({"forkJoin", "platform", "virtual"})
+    String executor;
+
+    JsonFactory jsonFactory;
+
+    String[] jsonStrings;
+
+    ReentrantLock[] locks;
+
+    Object[] monitors;
+
+    ExecutorService service;
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    int taskCount;
+
+    TestObject[] testObjects;
+
+    @Setup(Level.Trial)
+    public void onTrialSetup() throws IOException {
+      switch (executor) {
+        case "forkJoin":
+          service = new ForkJoinPool();
+          break;
+        case "platform":
+          service = Executors.newFixedThreadPool(PLATFORM_THREADS);
+          break;
+        case "virtual":
+          service = Executors.newVirtualThreadPerTaskExecutor();
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown executor: " + executor);
+      }
+
+      Workload workload = Workload.create();
+      ObjectMapper objectMapper = new ObjectMapper();
+      coder = TestObjectCoder.of();
+      encodedTestObjects = new byte[INPUT_COUNT][];
+      jsonFactory = objectMapper.getFactory();
+      jsonStrings = new String[INPUT_COUNT];
+      testObjects = new TestObject[INPUT_COUNT];
+      ByteArrayOutputStream bos = new ByteArrayOutputStream(1000);
+      for (int i = 0; i < INPUT_COUNT; ++i) {
+        jsonStrings[i] = objectMapper.writeValueAsString(workload.nextDictionary());
+        testObjects[i] = workload.nextTestObject();
+        bos.reset();
+        coder.encode(testObjects[i], bos);
+        encodedTestObjects[i] = bos.toByteArray();
+      }
+
+      locks = new ReentrantLock[taskCount];
+      monitors = new Object[taskCount];
+      for (int i = 0; i < taskCount; ++i) {
+        locks[i] = new ReentrantLock();
+        monitors[i] = new Object();
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void onTrialTearDown() throws InterruptedException {
+      service.shutdownNow();
+      service.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
+  /** State used by the benchmarks to report the number of tasks that are run. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class StateTasks {
+    public long tasks;
+  }
+
+  private static final int INPUT_COUNT = 1024;
+
+  private static final int PLATFORM_THREADS = 200;
+
+  private static final long SIMULATED_IO_MILLIS = 1;
+
+  private static void runTasks(StateExecutor state, StateTasks counter, Task task)
+      throws Exception {
+    CountDownLatch latch = new CountDownLatch(state.taskCount);
+    AtomicReference<Exception> failure = new AtomicReference<>();
+    for (int i = 0; i < state.taskCount; ++i) {
+      int index = i;
+      state.service.execute(
+          () -> {
+            try {
+              task.run(index);
+            } catch (Exception ex) {
+              failure.compareAndSet(null, ex);
+            } finally {
+              latch.countDown();
+            }
+          });
+    }
+    latch.await();
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+    counter.tasks += state.taskCount;
+  }
+
+  /** Benchmark that measures running tasks that round-trip a test object through its coder. */
+  @Benchmark
+  public void coderRoundTrip(StateExecutor state, StateTasks counter) throws Exception {
+    runTasks(
+        state,
+        counter,
+        index -> {
+          ByteArrayOutputStream bos = new ByteArrayOutputStream(1000);
+          state.coder.encode(state.testObjects[index & (INPUT_COUNT - 1)], bos);
+          state.coder.decode(new ByteArrayInputStream(bos.toByteArray()));
+        });
+  }
+
+  /**
+   * Benchmark that measures running tasks that, like a request handler, decode a test object with
+   * its coder, wait for simulated local I/O and then validate JSON structure using a {@link
+   * JsonParser}. A thread's work is split by the wait, so an executor has to interleave CPU bound
+   * and blocked tasks.
+   */
+  @Benchmark
+  public void decodeIoValidation(StateExecutor state, StateTasks counter) throws Exception {
+    runTasks(
+        state,
+        counter,
+        index -> {
+          int input = index & (INPUT_COUNT - 1);
+          state.coder.decode(new ByteArrayInputStream(state.encodedTestObjects[input]));
+          Thread.sleep(SIMULATED_IO_MILLIS);
+          try (JsonParser parser = state.jsonFactory.createParser(state.jsonStrings[input])) {
+            while (parser.nextToken() != null) {}
+          }
+        });
+  }
+
+  /**
+   * Benchmark that measures running tasks that validate JSON structure using a {@link JsonParser},
+   * as {@link JsonValidation} does.
+   */
+  @Benchmark
+  public void jsonValidation(StateExecutor state, StateTasks counter) throws Exception {
+    runTasks(
+        state,
+        counter,
+        index -> {
+          try (JsonParser parser =
+              state.jsonFactory.createParser(state.jsonStrings[index & (INPUT_COUNT - 1)])) {
+            while (parser.nextToken() != null) {}
+          }
+        });
+  }
+
+  /** Benchmark that measures running tasks that wait for simulated local I/O. */
+  @Benchmark
+  public void simulatedIo(StateExecutor state, StateTasks counter) throws Exception {
+    runTasks(state, counter, index -> Thread.sleep(SIMULATED_IO_MILLIS));
+  }
+
+  /**
+   * Benchmark that measures running tasks that wait for simulated local I/O while holding an
+   * uncontended {@link ReentrantLock}.
+   */
+  @Benchmark
+  public void simulatedIoHoldingLock(StateExecutor state, StateTasks counter) throws Exception {
+    runTasks(
+        state,
+        counter,
+        index -> {
+          ReentrantLock lock = state.locks[index];
+          lock.lock();
+          try {
+            Thread.sleep(SIMULATED_IO_MILLIS);
+          } finally {
+            lock.unlock();
+          }
+        });
+  }
+
+  /**
+   * Benchmark that measures running tasks that wait for simulated local I/O while holding an
+   * uncontended monitor, which pins a virtual thread to its carrier.
+   */
+  @Benchmark
+  public void simulatedIoHoldingMonitor(StateExecutor state, StateTasks counter)
+      throws Exception {
+    runTasks(
+        state,
+        counter,
+        index -> {
+          synchronized (state.monitors[index]) {
+            Thread.sleep(SIMULATED_IO_MILLIS);
+          }
+        });
+  }
+}